@@ -10,8 +10,11 @@ import android.os.Handler
 import android.os.HandlerThread
 import android.os.Looper
 import androidx.work.Configuration
+import com.crashops.sdk.communication.Communicator
+import com.crashops.sdk.communication.Reachability
 import com.crashops.sdk.data.Repository
 import com.crashops.sdk.service.LogsHistoryWorker
+import com.crashops.sdk.service.UploadCoordinator
 import com.crashops.sdk.util.AppLifecycleTracker
 import com.crashops.sdk.util.LifecycleListener
 import com.crashops.sdk.util.PrivateEventBus
@@ -67,8 +70,13 @@ class COHostApplication(base: Context?) : ContextWrapper(base), Configuration.Pr
                 if (intent.action == PrivateEventBus.Action.APPLICATION_GOING_BACKGROUND) {
                     onApplicationBackground()
                 }
+                if (intent.action == PrivateEventBus.Action.ON_NETWORK_ACTIVE) {
+                    onNetworkActive()
+                }
             }
-        }, PrivateEventBus.Action.APPLICATION_GOING_BACKGROUND, PrivateEventBus.Action.APPLICATION_GOING_FOREGROUND)
+        }, PrivateEventBus.Action.APPLICATION_GOING_BACKGROUND, PrivateEventBus.Action.APPLICATION_GOING_FOREGROUND, PrivateEventBus.Action.ON_NETWORK_ACTIVE)
+
+        Reachability.observeNetworks(applicationContext)
 
         // From: https://stackoverflow.com/questions/4414171/how-to-detect-when-an-android-app-goes-to-the-background-and-come-back-to-the-fo
         (applicationContext as? Application)?.registerActivityLifecycleCallbacks(activitiesTracker)
@@ -79,6 +87,9 @@ class COHostApplication(base: Context?) : ContextWrapper(base), Configuration.Pr
 
     private fun onApplicationBackground() {
         SdkLogger.log(TAG, "application enters background")
+        runInBackgroundThread {
+            Repository.instance.tracer?.flush()
+        }
     }
 
     private fun onApplicationForeground() {
@@ -92,6 +103,17 @@ class COHostApplication(base: Context?) : ContextWrapper(base), Configuration.Pr
         //LogsHistoryWorker.testSelf(this)
     }
 
+    private fun onNetworkActive() {
+        runInBackgroundThread {
+            if (!Repository.instance.hasPendingLogs()) return@runInBackgroundThread
+
+            SdkLogger.log(TAG, "network is available and logs are pending")
+            // The handshakes are done while the upload pass is debounced
+            Communicator.instance.prewarm()
+            LogsHistoryWorker.runIfIdle(this, UploadCoordinator.Trigger.NetworkAvailable)
+        }
+    }
+
     fun cleanup() {
         PrivateEventBus.cleanup()
         (baseContext as? Application)?.unregisterActivityLifecycleCallbacks(activitiesTracker)
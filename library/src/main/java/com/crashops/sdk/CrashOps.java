@@ -15,12 +15,17 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.crashops.sdk.communication.Communicator;
+import com.crashops.sdk.communication.OkHttpTransport;
+import com.crashops.sdk.communication.Transport;
 import com.crashops.sdk.configuration.Configurations;
 import com.crashops.sdk.configuration.ConfigurationsProvider;
+import com.crashops.sdk.configuration.RemoteConfigurations;
 import com.crashops.sdk.data.Repository;
 import com.crashops.sdk.logic.ActivityTraceable;
 import com.crashops.sdk.logic.ActivityTracer;
 import com.crashops.sdk.service.LogsHistoryWorker;
+import com.crashops.sdk.service.PresenceReporter;
+import com.crashops.sdk.service.UploadCoordinator;
 import com.crashops.sdk.service.exceptionshandler.CrashOpsErrorHandler;
 import com.crashops.sdk.util.Constants;
 import com.crashops.sdk.util.DeviceInfoFetcher;
@@ -33,7 +38,6 @@ import com.crashops.sdk.util.Utils;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -188,6 +192,16 @@ public class CrashOps {
         return didSet;
     }
 
+    /**
+     * Sets the transport of all CrashOps requests, e.g. an {@link OkHttpTransport} with the application's own OkHttp client
+     * (to share its connection pool and dispatcher).
+     *
+     * @param transport The transport, or null to restore the default one.
+     */
+    public void setTransport(@Nullable Transport transport) {
+        Communicator.setTransport(transport != null ? transport : new OkHttpTransport());
+    }
+
     public void removeOnCrashListener() {
         setOnCrashListener(null);
     }
@@ -395,6 +409,7 @@ public class CrashOps {
         }
 
         Context context = COHostApplication.sharedInstance();
+        RemoteConfigurations.getInstance().refreshIfNeeded();
 
         if (!LogsHistoryWorker.registerSelf(context)) {
             Utils.debugDialog("Failed to register job!");
@@ -426,14 +441,7 @@ public class CrashOps {
                     sessionDetails.put(Constants.Keys.APPLICATION_BUILD_NUMBER, appBuildNumber);
                     sessionDetails.put(Constants.Keys.HOST_APP_VERSION_NAME, info.versionName);
 
-                    Communicator.getInstance().sendPresence(sessionDetails.toString(), new Function1<Object, Unit>() {
-                        @Override
-                        public Unit invoke(Object o) {
-                            return null;
-                        }
-                    });
-                } catch (IOException e) {
-                    SdkLogger.error(TAG, e);
+                    PresenceReporter.getInstance().update(COHostApplication.sharedInstance(), sessionDetails);
                 } catch (JSONException e) {
                     SdkLogger.error(TAG, e);
                 } catch (PackageManager.NameNotFoundException e) {
@@ -442,7 +450,7 @@ public class CrashOps {
             }
         });
 
-        LogsHistoryWorker.runIfIdle(context, new Function1<Boolean, Unit>() {
+        LogsHistoryWorker.runIfIdle(context, UploadCoordinator.Trigger.Launch, new Function1<Boolean, Unit>() {
             @Override
             public Unit invoke(Boolean result) {
                 SdkLogger.log(TAG, result != null ? result.toString() : "null");
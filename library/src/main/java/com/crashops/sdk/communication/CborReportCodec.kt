@@ -0,0 +1,127 @@
+package com.crashops.sdk.communication
+
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import okhttp3.MediaType
+import okio.BufferedSink
+import java.io.InputStream
+import java.io.InputStreamReader
+
+/**
+ * Transcodes the stored JSON report into CBOR (RFC 7049) token by token, the report is never held in memory.
+ *
+ * Objects and arrays are written with indefinite lengths because their sizes are unknown while streaming.
+ * Integers take 1-9 bytes instead of their decimal digits, and the keys and stack frames keep their text
+ * but lose the quotes, commas and colons.
+ */
+object CborReportCodec : ReportCodec {
+    override val name: String = "cbor"
+
+    override val contentType: MediaType? = MediaType.parse("application/cbor")
+
+    private const val MAJOR_TYPE_UNSIGNED = 0
+    private const val MAJOR_TYPE_NEGATIVE = 1
+    private const val MAJOR_TYPE_TEXT = 3
+    private const val MAJOR_TYPE_ARRAY = 4
+    private const val MAJOR_TYPE_MAP = 5
+
+    private const val INDEFINITE_LENGTH = 31
+    private const val BREAK = 0xff
+    private const val FALSE = 0xf4
+    private const val TRUE = 0xf5
+    private const val NULL = 0xf6
+    private const val FLOAT_32 = 0xfa
+    private const val FLOAT_64 = 0xfb
+
+    override fun encodedLength(jsonLength: Long): Long {
+        return -1
+    }
+
+    override fun encode(json: InputStream, sink: BufferedSink) {
+        JsonReader(InputStreamReader(json, Charsets.UTF_8)).use { reader ->
+            while (true) {
+                when (reader.peek()) {
+                    JsonToken.BEGIN_OBJECT -> {
+                        reader.beginObject()
+                        sink.writeByte((MAJOR_TYPE_MAP shl 5) or INDEFINITE_LENGTH)
+                    }
+                    JsonToken.END_OBJECT -> {
+                        reader.endObject()
+                        sink.writeByte(BREAK)
+                    }
+                    JsonToken.BEGIN_ARRAY -> {
+                        reader.beginArray()
+                        sink.writeByte((MAJOR_TYPE_ARRAY shl 5) or INDEFINITE_LENGTH)
+                    }
+                    JsonToken.END_ARRAY -> {
+                        reader.endArray()
+                        sink.writeByte(BREAK)
+                    }
+                    JsonToken.NAME -> writeText(sink, reader.nextName())
+                    JsonToken.STRING -> writeText(sink, reader.nextString())
+                    JsonToken.NUMBER -> writeNumber(sink, reader.nextString())
+                    JsonToken.BOOLEAN -> sink.writeByte(if (reader.nextBoolean()) TRUE else FALSE)
+                    JsonToken.NULL -> {
+                        reader.nextNull()
+                        sink.writeByte(NULL)
+                    }
+                    JsonToken.END_DOCUMENT, null -> return
+                }
+            }
+        }
+    }
+
+    private fun writeText(sink: BufferedSink, text: String) {
+        val bytes = text.toByteArray(Charsets.UTF_8)
+        writeHead(sink, MAJOR_TYPE_TEXT, bytes.size.toLong())
+        sink.write(bytes)
+    }
+
+    private fun writeNumber(sink: BufferedSink, number: String) {
+        val integer = number.toLongOrNull()
+        if (integer != null) {
+            if (integer >= 0) {
+                writeHead(sink, MAJOR_TYPE_UNSIGNED, integer)
+            } else {
+                writeHead(sink, MAJOR_TYPE_NEGATIVE, -1 - integer)
+            }
+            return
+        }
+
+        val double = number.toDouble()
+        val float = double.toFloat()
+        if (float.toDouble() == double) {
+            sink.writeByte(FLOAT_32)
+            sink.writeInt(java.lang.Float.floatToIntBits(float))
+        } else {
+            sink.writeByte(FLOAT_64)
+            sink.writeLong(java.lang.Double.doubleToLongBits(double))
+        }
+    }
+
+    /**
+     * Writes the initial byte of a data item, followed by its argument in the shortest form.
+     */
+    private fun writeHead(sink: BufferedSink, majorType: Int, argument: Long) {
+        val type = majorType shl 5
+        when {
+            argument < 24 -> sink.writeByte(type or argument.toInt())
+            argument <= 0xff -> {
+                sink.writeByte(type or 24)
+                sink.writeByte(argument.toInt())
+            }
+            argument <= 0xffff -> {
+                sink.writeByte(type or 25)
+                sink.writeShort(argument.toInt())
+            }
+            argument <= 0xffffffffL -> {
+                sink.writeByte(type or 26)
+                sink.writeInt(argument.toInt())
+            }
+            else -> {
+                sink.writeByte(type or 27)
+                sink.writeLong(argument)
+            }
+        }
+    }
+}
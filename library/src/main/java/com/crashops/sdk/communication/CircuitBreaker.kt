@@ -0,0 +1,155 @@
+package com.crashops.sdk.communication
+
+import android.content.Context
+import com.crashops.sdk.COHostApplication
+import com.crashops.sdk.configuration.Configurations
+import com.crashops.sdk.data.toJson
+import com.crashops.sdk.util.Constants
+import com.crashops.sdk.util.SdkLogger
+import com.crashops.sdk.util.Utils
+import okhttp3.HttpUrl
+import org.json.JSONObject
+
+/**
+ * Stops sending requests to an endpoint that keeps failing, so a server outage doesn't drain the host's battery.
+ *
+ * Closed: requests go through, consecutive failures are counted.
+ * Open: after [Configurations.circuitBreakerFailureThreshold] failures, requests are refused until the open period ends.
+ * Half-open: a single probe request goes through, its result closes the circuit or opens it again for a longer period.
+ *
+ * The state survives the process, a periodic job that wakes up during an outage won't even read the stored reports.
+ */
+class CircuitBreaker private constructor() {
+    enum class Endpoint {
+        Reports, Ping, Config
+    }
+
+    enum class State {
+        Closed, Open, HalfOpen
+    }
+
+    companion object {
+        @JvmStatic
+        val instance: CircuitBreaker = CircuitBreaker()
+
+        private val TAG: String = CircuitBreaker::class.java.simpleName
+
+        private const val MAX_OPEN_MILLISECONDS: Long = Constants.ONE_HOUR_MILLISECONDS
+
+        private const val STATE = "state"
+        private const val FAILURES = "failures"
+        private const val TRIPS = "trips"
+        private const val OPENED_AT = "openedAt"
+
+        @JvmStatic
+        fun endpointOf(url: HttpUrl): Endpoint {
+            return when (url.encodedPath()) {
+                HttpUrl.parse(Communicator.PingUrl)?.encodedPath() -> Endpoint.Ping
+                HttpUrl.parse(Communicator.ConfigUrl)?.encodedPath() -> Endpoint.Config
+                else -> Endpoint.Reports
+            }
+        }
+
+        /**
+         * @param httpResponseCode `null` if no response arrived at all.
+         */
+        @JvmStatic
+        fun isFailure(httpResponseCode: Int?): Boolean {
+            return httpResponseCode == null || httpResponseCode >= 500 || httpResponseCode == 429
+        }
+    }
+
+    private var _breakers: JSONObject? = null
+    private val breakers: JSONObject
+        get() {
+            _breakers?.let { return it }
+
+            val stored = preferences().getString(Constants.Keys.CircuitBreakers, null)?.toJson() ?: JSONObject()
+            _breakers = stored
+            return stored
+        }
+
+    /**
+     * Only one probe is sent while half-open, it's not persisted since a new process may probe again.
+     */
+    private val probingEndpoints: HashSet<Endpoint> = hashSetOf()
+
+    @Synchronized
+    fun state(endpoint: Endpoint): State {
+        val breaker = breakers.optJSONObject(endpoint.name) ?: return State.Closed
+        if (breaker.optString(STATE) != State.Open.name) return State.Closed
+
+        val openedAt = breaker.optLong(OPENED_AT)
+        return if (Utils.now() - openedAt >= openMilliseconds(breaker.optInt(TRIPS, 1))) {
+            State.HalfOpen
+        } else {
+            State.Open
+        }
+    }
+
+    /**
+     * @return `true` if no request to the endpoint will be sent right now.
+     */
+    @Synchronized
+    fun isRefusing(endpoint: Endpoint): Boolean {
+        return when (state(endpoint)) {
+            State.Closed -> false
+            State.Open -> true
+            State.HalfOpen -> probingEndpoints.contains(endpoint)
+        }
+    }
+
+    /**
+     * Must be followed by [onResult] once the request is allowed and sent.
+     */
+    @Synchronized
+    fun allowsRequest(endpoint: Endpoint): Boolean {
+        return when (state(endpoint)) {
+            State.Closed -> true
+            State.Open -> false
+            State.HalfOpen -> probingEndpoints.add(endpoint)
+        }
+    }
+
+    @Synchronized
+    fun onResult(endpoint: Endpoint, httpResponseCode: Int?) {
+        val wasProbing = probingEndpoints.remove(endpoint)
+        val breaker = breakers.optJSONObject(endpoint.name) ?: JSONObject()
+
+        if (!isFailure(httpResponseCode)) {
+            if (breaker.length() == 0) return
+
+            if (breaker.optString(STATE) == State.Open.name) {
+                SdkLogger.log(TAG, "$endpoint circuit closed")
+            }
+            breakers.remove(endpoint.name)
+            store()
+            return
+        }
+
+        val failures = breaker.optInt(FAILURES) + 1
+        breaker.put(FAILURES, failures)
+        if (wasProbing || failures >= Configurations.circuitBreakerFailureThreshold()) {
+            val trips = if (wasProbing) breaker.optInt(TRIPS) + 1 else 1
+            breaker.put(STATE, State.Open.name)
+            breaker.put(TRIPS, trips)
+            breaker.put(OPENED_AT, Utils.now())
+            SdkLogger.error(TAG, "$endpoint circuit opened for ${openMilliseconds(trips) / Constants.ONE_SECOND_MILLISECONDS} seconds ($failures failures)")
+        }
+
+        breakers.put(endpoint.name, breaker)
+        store()
+    }
+
+    private fun openMilliseconds(trips: Int): Long {
+        val openMilliseconds = Configurations.circuitBreakerOpenMilliseconds() shl Math.min(Math.max(trips - 1, 0), 16)
+        return Math.min(openMilliseconds, Math.max(MAX_OPEN_MILLISECONDS, Configurations.circuitBreakerOpenMilliseconds()))
+    }
+
+    private fun store() {
+        preferences().edit().putString(Constants.Keys.CircuitBreakers, breakers.toString()).apply()
+    }
+
+    private fun preferences() = COHostApplication.shared()
+            .getSharedPreferences(Constants.Keys.LogsPersistenceFileName, Context.MODE_PRIVATE)
+}
@@ -2,28 +2,122 @@ package com.crashops.sdk.communication
 
 import android.app.Activity
 import android.os.Build
+import com.crashops.sdk.COHostApplication
+import com.crashops.sdk.configuration.Configurations
 import com.crashops.sdk.data.Repository
 import com.crashops.sdk.util.Constants
 import com.crashops.sdk.util.SdkLogger
 import com.crashops.sdk.util.Strings
 import com.crashops.sdk.util.Utils
 import org.json.JSONObject
+import java.io.File
 import java.io.IOException
 import java.net.SocketTimeoutException
-import java.util.concurrent.TimeUnit
 import okhttp3.*
 
-class Communicator {
+/**
+ * @param environment The SDK's state and the device's network, replaced to run the communicator on a plain JVM.
+ */
+class Communicator @JvmOverloads constructor(internal val environment: Environment = DeviceEnvironment()) {
 
-    private var _appKey: String? = null
-    private val appKey: String?
-        get() {
+    /**
+     * Everything the communicator consults or updates around its requests.
+     */
+    interface Environment {
+        val transport: Transport
+
+        /**
+         * @return `null` (or empty) until the host application set its key.
+         */
+        fun appKey(): String?
+
+        fun networkStatus(): Reachability.NetworkStatus
+
+        /**
+         * @see CircuitBreaker.isRefusing
+         */
+        fun isRefusing(endpoint: CircuitBreaker.Endpoint): Boolean
+
+        /**
+         * @see CircuitBreaker.allowsRequest
+         */
+        fun allowsRequest(endpoint: CircuitBreaker.Endpoint): Boolean
+
+        /**
+         * @param httpResponseCode `null` if the request failed without a response.
+         */
+        fun onResult(endpoint: CircuitBreaker.Endpoint, httpResponseCode: Int?)
+
+        /**
+         * @see ThroughputEstimator.onRequestCompleted
+         */
+        fun onRequestCompleted(networkStatus: Reachability.NetworkStatus, bodyBytes: Long, elapsedMilliseconds: Long)
+
+        /**
+         * @see ServerCapabilities.supports
+         */
+        fun supports(capability: String): Boolean
+
+        fun onCapabilitiesAdvertised(headerValue: String)
+
+        fun compressionThresholdBytes(): Long
+
+        fun reportCodec(): ReportCodec
+    }
+
+    /**
+     * The SDK's singletons on the device.
+     */
+    class DeviceEnvironment : Environment {
+        private var _appKey: String? = null
+
+        override val transport: Transport
+            get() = Communicator.transport
+
+        override fun appKey(): String? {
             if (_appKey != null) return _appKey
 
             _appKey = Repository.instance.loadCustomValue(Constants.Keys.AppKey)
             return _appKey
         }
 
+        override fun networkStatus(): Reachability.NetworkStatus {
+            return Reachability.getReachabilityStatus(COHostApplication.shared())
+        }
+
+        override fun isRefusing(endpoint: CircuitBreaker.Endpoint): Boolean {
+            return CircuitBreaker.instance.isRefusing(endpoint)
+        }
+
+        override fun allowsRequest(endpoint: CircuitBreaker.Endpoint): Boolean {
+            return CircuitBreaker.instance.allowsRequest(endpoint)
+        }
+
+        override fun onResult(endpoint: CircuitBreaker.Endpoint, httpResponseCode: Int?) {
+            CircuitBreaker.instance.onResult(endpoint, httpResponseCode)
+        }
+
+        override fun onRequestCompleted(networkStatus: Reachability.NetworkStatus, bodyBytes: Long, elapsedMilliseconds: Long) {
+            ThroughputEstimator.instance.onRequestCompleted(networkStatus, bodyBytes, elapsedMilliseconds)
+        }
+
+        override fun supports(capability: String): Boolean {
+            return ServerCapabilities.instance.supports(capability)
+        }
+
+        override fun onCapabilitiesAdvertised(headerValue: String) {
+            ServerCapabilities.instance.onAdvertised(headerValue)
+        }
+
+        override fun compressionThresholdBytes(): Long {
+            return Configurations.requestCompressionThresholdBytes().toLong()
+        }
+
+        override fun reportCodec(): ReportCodec {
+            return ReportCodec.negotiated()
+        }
+    }
+
     private val callbacks: HashMap<Int, Utils.Callback<Pair<Int, String?>?>> = hashMapOf()
 
     companion object {
@@ -42,9 +136,57 @@ class Communicator {
          */
         const val LogsServerUrl = "https://crashops.com/api/reports"
 
-        private val client: OkHttpClient by lazy {
-            OkHttpClient.Builder().connectTimeout(30, TimeUnit.SECONDS).build()
-        }
+        /**
+         * Server's endpoint that will receive the session headers (schema v2 only).
+         */
+        const val SessionsUrl = "https://crashops.com/api/sessions"
+
+        /**
+         * Server's endpoint of the runtime configuration, see [com.crashops.sdk.configuration.RemoteConfigurations].
+         */
+        const val ConfigUrl = "https://crashops.com/api/config"
+
+        /**
+         * Server's endpoint for resumable uploads of large reports, see [ServerCapabilities.RESUMABLE_UPLOADS].
+         */
+        const val UploadsUrl = "https://crashops.com/api/uploads"
+
+        /**
+         * Tells the server which payload schema the request body follows.
+         */
+        const val SchemaHeader = "crashops-schema"
+
+        /**
+         * Derived from the stored report's content, the server processes a report at most once per key.
+         */
+        const val IdempotencyKeyHeader = "Idempotency-Key"
+
+        const val UploadLengthHeader = "crashops-upload-length"
+
+        /**
+         * The content type of the whole upload, its parts are sent as plain bytes.
+         */
+        const val UploadTypeHeader = "crashops-upload-type"
+
+        private var _transport: Transport? = null
+
+        /**
+         * Carries all requests, an [OkHttpTransport] with its own client unless the host supplied another one.
+         */
+        @JvmStatic
+        var transport: Transport
+            @Synchronized
+            get() {
+                _transport?.let { return it }
+
+                val defaultTransport = OkHttpTransport()
+                _transport = defaultTransport
+                return defaultTransport
+            }
+            @Synchronized
+            set(value) {
+                _transport = value
+            }
 
         fun removeCallbacks(key: Any) {
             removeCallbacks(key.hashCode())
@@ -56,13 +198,30 @@ class Communicator {
     }
 
     //TODO Try this later: https://github.com/gildor/kotlin-coroutines-okhttp
-    private fun apiCall(request: Request, callerKey: Any, callback: Utils.Callback<Pair<Int, String?>?>) {
+    /**
+     * @param onBodySent Receives the number of body bytes that went on the wire, once a response arrived.
+     */
+    private fun apiCall(request: Request, callerKey: Any, callback: Utils.Callback<Pair<Int, String?>?>, onResponseHeaders: ((Headers) -> Unit)? = null, onBodySent: ((Long) -> Unit)? = null) {
+        val endpoint = CircuitBreaker.endpointOf(request.url())
+        if (environment.isRefusing(endpoint)) {
+            SdkLogger.log(TAG, "the $endpoint circuit is open, skipping ${request.url()}")
+            callback.onCallback(null)
+            return
+        }
+
         val callerKeyHashCode = storeCallback(callerKey, callback) ?: return
+        if (!environment.allowsRequest(endpoint)) {
+            // Another request took the half-open probe
+            callback.onCallback(null)
+            callbacks.remove(callerKeyHashCode)
+            return
+        }
+        val networkStatus = environment.networkStatus()
 
-        client.newCall(request)
-                .enqueue(object : Callback {
-                    override fun onFailure(call: Call, e: IOException) {
+        environment.transport.enqueue(request, object : Transport.Listener {
+                    override fun onFailure(request: Request, e: IOException) {
                         SdkLogger.error(TAG, e)
+                        environment.onResult(endpoint, null)
 //                    instance.callbacks[callerKeyHashCode]?.forEach {
 //                        it.onCallback(null)
 //                    }
@@ -72,11 +231,20 @@ class Communicator {
                         }
 
                         callback.onCallback(null)
-                        removeCallbacks(callerKeyHashCode)
+                        callbacks.remove(callerKeyHashCode)
                     }
 
-                    override fun onResponse(call: Call, response: Response) {
+                    override fun onResponse(request: Request, response: Response) {
                         SdkLogger.log(TAG, response)
+                        environment.onResult(endpoint, response.code())
+                        val sentBytes = sentLengthOf(request.body())
+                        onBodySent?.invoke(sentBytes)
+                        environment.onRequestCompleted(networkStatus,
+                                sentBytes,
+                                response.receivedResponseAtMillis() - response.sentRequestAtMillis())
+                        response.header(ServerCapabilities.HEADER)?.let {
+                            environment.onCapabilitiesAdvertised(it)
+                        }
 //                    instance.callbacks[callerKeyHashCode]?.forEach {
 //                        it.onCallback(response.body()?.string())
 //                    }
@@ -112,23 +280,14 @@ class Communicator {
                             }
                         }
 
+                        onResponseHeaders?.invoke(response.headers())
                         callback.onCallback(Pair(response.code(), responseBody))
-                        removeCallbacks(callerKeyHashCode)
+                        callbacks.remove(callerKeyHashCode)
                     }
                 })
     }
 
     private fun apiCall(url: String, jsonString: String? = null, callerKey: Any, callback: Utils.Callback<Pair<Int, String?>?>) {
-        val crashOpsAppKey = appKey ?: run {
-            callback.onCallback(null)
-            return
-        }
-
-        if (crashOpsAppKey.isEmpty()) {
-            callback.onCallback(null)
-            return
-        }
-
         if (jsonString != null) {
             // Validate
             try {
@@ -140,31 +299,96 @@ class Communicator {
             }
         }
 
-        var _request: Request? = null
-        jsonString?.let {
-            _request =
-                    Request.Builder()
-                            .addHeader("crashops-application-key", crashOpsAppKey)
-                            .post(RequestBody.create(
-                                    MediaType.parse("application/json; charset=utf-8"),
-                                    jsonString))
-                            .url(url)
-                            .build()
-        } ?: run {
-            _request =
-                    Request.Builder()
-                            .addHeader("crashops-application-key", crashOpsAppKey)
-                            .get()
-                            .url(url)
-                            .build()
+        val requestBody: RequestBody? = jsonString?.let {
+            RequestBody.create(MediaType.parse("application/json; charset=utf-8"), it)
+        }
+
+        apiCall(url, requestBody, callerKey, callback)
+    }
+
+    private fun apiCall(url: String, requestBody: RequestBody?, callerKey: Any, callback: Utils.Callback<Pair<Int, String?>?>, headers: Map<String, String> = mapOf(), onResponseHeaders: ((Headers) -> Unit)? = null, onBodySent: ((Long) -> Unit)? = null) {
+        val crashOpsAppKey = environment.appKey() ?: run {
+            callback.onCallback(null)
+            return
         }
 
-        val request = _request ?: run {
+        if (crashOpsAppKey.isEmpty()) {
             callback.onCallback(null)
             return
         }
 
-        apiCall(request, callerKey, callback)
+        val requestBuilder = Request.Builder()
+                .addHeader("crashops-application-key", crashOpsAppKey)
+                .url(url)
+
+        headers.forEach { (name, value) ->
+            requestBuilder.addHeader(name, value)
+        }
+
+        val compressedBody = requestBody?.let { compressedIfWorthIt(it) }
+        if (compressedBody is GzipRequestBody) {
+            requestBuilder.addHeader("Content-Encoding", GzipRequestBody.CONTENT_ENCODING)
+        }
+
+        compressedBody?.let {
+            requestBuilder.post(it)
+        } ?: run {
+            requestBuilder.get()
+        }
+
+        apiCall(requestBuilder.build(), callerKey, callback, onResponseHeaders, onBodySent)
+    }
+
+    /**
+     * Streamed bodies may only know their length after they were written.
+     */
+    private fun sentLengthOf(requestBody: RequestBody?): Long {
+        val length = when (requestBody) {
+            null -> 0
+            is GzipRequestBody -> requestBody.compressedLength
+            is ReportRequestBody -> requestBody.encodedLength
+            else -> requestBody.contentLength()
+        }
+
+        return Math.max(length, 0)
+    }
+
+    /**
+     * Bodies above the configured threshold (or of unknown length) are gzipped, once the server accepts it.
+     * Resumable upload parts are sent as is, their ranges refer to the staged bytes.
+     */
+    private fun compressedIfWorthIt(requestBody: RequestBody): RequestBody {
+        if (requestBody is FileRegionRequestBody) return requestBody
+        if (!environment.supports(ServerCapabilities.GZIP)) return requestBody
+
+        val contentLength = requestBody.contentLength()
+        if (contentLength >= 0 && contentLength < environment.compressionThresholdBytes()) return requestBody
+
+        return GzipRequestBody(requestBody)
+    }
+
+    /**
+     * Opens (and keeps alive) the connection to the server with a cheap request, so the upload that follows skips the handshakes.
+     */
+    fun prewarm() {
+        val request = Request.Builder()
+                .url(PingUrl)
+                .head()
+                .build()
+
+        val endpoint = CircuitBreaker.endpointOf(request.url())
+        if (environment.isRefusing(endpoint)) return
+
+        SdkLogger.log(TAG, "pre-warming the connection")
+        environment.transport.enqueue(request, object : Transport.Listener {
+            override fun onFailure(request: Request, e: IOException) {
+                SdkLogger.error(TAG, e)
+            }
+
+            override fun onResponse(request: Request, response: Response) {
+                response.close()
+            }
+        })
     }
 
     private fun storeCallback(
@@ -185,7 +409,7 @@ class Communicator {
 //            val list = instance.callbacks[callerKeyHashCode] ?: arrayListOf()
 //            list.add(callback)
 //            instance.callbacks[callerKeyHashCode] = list
-            instance.callbacks[callerKeyHashCode] = callback
+            callbacks[callerKeyHashCode] = callback
             callerKeyHashCode
         } else {
             SdkLogger.error(TAG, "Missing callback for '$callerKey' - aborting call")
@@ -203,6 +427,89 @@ class Communicator {
         })
     }
 
+    /**
+     * Uploads a stored report, the request body is streamed from the report's file.
+     * @param callback Also receives the number of bytes the body took on the wire (encoded and compressed), 0 if there was no response.
+     */
+    fun report(payload: ReportPayload, schemaVersion: Int, idempotencyKey: String, callback: (Any?, Long) -> Unit) {
+        val serverUrl = LogsServerUrl
+        var bytesSent = 0L
+        apiCall(serverUrl, ReportRequestBody(payload, environment.reportCodec()), this, object : Utils.Callback<Pair<Int, String?>?> {
+            override fun onCallback(result: Pair<Int, String?>?) {
+                callback.invoke(result, bytesSent)
+            }
+        }, mapOf(
+                SchemaHeader to schemaVersion.toString(),
+                IdempotencyKeyHeader to idempotencyKey), onBodySent = { bytesSent = it })
+    }
+
+    /**
+     * Opens a resumable upload, the server responds with its `uploadId`.
+     */
+    fun startUpload(totalLength: Long, contentType: String, schemaVersion: Int, idempotencyKey: String, callback: (Any?) -> Unit) {
+        val serverUrl = UploadsUrl
+        val requestBody = RequestBody.create(MediaType.parse("application/json; charset=utf-8"), "{}")
+        apiCall(serverUrl, requestBody, this, object : Utils.Callback<Pair<Int, String?>?> {
+            override fun onCallback(result: Pair<Int, String?>?) {
+                callback.invoke(result)
+            }
+        }, mapOf(
+                UploadLengthHeader to totalLength.toString(),
+                UploadTypeHeader to contentType,
+                SchemaHeader to schemaVersion.toString(),
+                IdempotencyKeyHeader to idempotencyKey))
+    }
+
+    /**
+     * Sends one part of a resumable upload, the server responds with the offset it has committed so far.
+     */
+    fun uploadChunk(uploadId: String, file: File, offset: Long, length: Long, callback: (Any?) -> Unit) {
+        val serverUrl = "$UploadsUrl/$uploadId"
+        val totalLength = file.length()
+        apiCall(serverUrl, FileRegionRequestBody(file, offset, length), this, object : Utils.Callback<Pair<Int, String?>?> {
+            override fun onCallback(result: Pair<Int, String?>?) {
+                callback.invoke(result)
+            }
+        }, mapOf("Content-Range" to "bytes $offset-${offset + length - 1}/$totalLength"))
+    }
+
+    /**
+     * Asks for the committed offset of a resumable upload.
+     */
+    fun uploadStatus(uploadId: String, callback: (Any?) -> Unit) {
+        val serverUrl = "$UploadsUrl/$uploadId"
+        apiCall(serverUrl, null as RequestBody?, this, object : Utils.Callback<Pair<Int, String?>?> {
+            override fun onCallback(result: Pair<Int, String?>?) {
+                callback.invoke(result)
+            }
+        })
+    }
+
+    /**
+     * Fetches the runtime configuration, a 304 response means the cached one (tagged `eTag`) is still valid.
+     * @param callback Receives the response and its `ETag`.
+     */
+    fun fetchConfiguration(eTag: String?, callback: (Any?, String?) -> Unit) {
+        val serverUrl = ConfigUrl
+        var responseETag: String? = null
+        apiCall(serverUrl, null as RequestBody?, this, object : Utils.Callback<Pair<Int, String?>?> {
+            override fun onCallback(result: Pair<Int, String?>?) {
+                callback.invoke(result, responseETag)
+            }
+        }, eTag?.let { mapOf("If-None-Match" to it) } ?: mapOf(), onResponseHeaders = { headers ->
+            responseETag = headers.get("ETag")
+        })
+    }
+
+    fun sendSessionHeader(jsonString: String, callback: (Any?) -> Unit) {
+        val serverUrl = SessionsUrl
+        apiCall(serverUrl, jsonString, this, object : Utils.Callback<Pair<Int, String?>?> {
+            override fun onCallback(result: Pair<Int, String?>?) {
+                callback.invoke(result)
+            }
+        })
+    }
+
     @Throws(IOException::class)
     fun sendPresence(jsonString: String, callback: (Any?) -> Unit) {
         val serverUrl = PingUrl
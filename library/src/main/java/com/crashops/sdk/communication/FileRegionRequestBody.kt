@@ -0,0 +1,36 @@
+package com.crashops.sdk.communication
+
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okio.BufferedSink
+import okio.Okio
+import java.io.File
+import java.io.FileInputStream
+
+/**
+ * Streams `length` bytes of a file, starting at `offset`.
+ */
+class FileRegionRequestBody(private val file: File, private val offset: Long, private val length: Long) : RequestBody() {
+    override fun contentType(): MediaType? {
+        return MediaType.parse("application/octet-stream")
+    }
+
+    override fun contentLength(): Long {
+        return length
+    }
+
+    override fun writeTo(sink: BufferedSink) {
+        FileInputStream(file).use { inputStream ->
+            var skipped = 0L
+            while (skipped < offset) {
+                val skippedNow = inputStream.skip(offset - skipped)
+                if (skippedNow <= 0) break
+                skipped += skippedNow
+            }
+
+            Okio.buffer(Okio.source(inputStream)).use { source ->
+                sink.write(source, length)
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.crashops.sdk.communication
+
+import com.crashops.sdk.util.SdkMetrics
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okio.Buffer
+import okio.BufferedSink
+import okio.Okio
+import okio.Sink
+import okio.Timeout
+import java.util.*
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+
+/**
+ * Gzips another request body while it's written, see [ServerCapabilities.GZIP].
+ *
+ * The deflaters and their buffers are pooled, a burst of uploads doesn't allocate (and leave native memory behind) per request.
+ */
+class GzipRequestBody(private val delegate: RequestBody) : RequestBody() {
+    companion object {
+        const val CONTENT_ENCODING = "gzip"
+
+        private const val BUFFER_SIZE = 8 * 1024
+
+        /**
+         * Enough for the concurrent requests of an upload pass.
+         */
+        private const val MAX_POOLED_COMPRESSORS = 4
+
+        private val GZIP_HEADER = byteArrayOf(0x1f, 0x8b.toByte(), Deflater.DEFLATED.toByte(), 0, 0, 0, 0, 0, 0, 0)
+
+        private val pool: ArrayDeque<Compressor> = ArrayDeque()
+
+        private fun acquire(): Compressor {
+            return synchronized(pool) { pool.poll() } ?: Compressor()
+        }
+
+        private fun release(compressor: Compressor) {
+            compressor.reset()
+            val isPooled = synchronized(pool) {
+                pool.size < MAX_POOLED_COMPRESSORS && pool.add(compressor)
+            }
+
+            if (!isPooled) {
+                compressor.deflater.end()
+            }
+        }
+    }
+
+    private class Compressor {
+        val deflater = Deflater(Deflater.DEFAULT_COMPRESSION, true)
+        val crc = CRC32()
+        val input = ByteArray(BUFFER_SIZE)
+        val output = ByteArray(BUFFER_SIZE)
+
+        fun reset() {
+            deflater.reset()
+            crc.reset()
+        }
+    }
+
+    /**
+     * Known once the body was written, -1 before that.
+     */
+    @Volatile
+    var compressedLength: Long = -1
+        private set
+
+    override fun contentType(): MediaType? {
+        return delegate.contentType()
+    }
+
+    override fun contentLength(): Long {
+        return -1
+    }
+
+    override fun writeTo(sink: BufferedSink) {
+        val compressor = acquire()
+        try {
+            val gzipSink = CompressingSink(sink, compressor)
+            gzipSink.writeHeader()
+
+            val uncompressed = Okio.buffer(gzipSink)
+            delegate.writeTo(uncompressed)
+            uncompressed.emit()
+            gzipSink.finish()
+
+            compressedLength = gzipSink.compressedLength
+            SdkMetrics.instance.add(SdkMetrics.Counter.RequestBytesBeforeCompression, gzipSink.uncompressedLength)
+            SdkMetrics.instance.add(SdkMetrics.Counter.RequestBytesAfterCompression, gzipSink.compressedLength)
+        } finally {
+            release(compressor)
+        }
+    }
+
+    private class CompressingSink(private val sink: BufferedSink, private val compressor: Compressor) : Sink {
+        var uncompressedLength: Long = 0
+        var compressedLength: Long = 0
+
+        fun writeHeader() {
+            sink.write(GZIP_HEADER)
+            compressedLength += GZIP_HEADER.size
+        }
+
+        override fun write(source: Buffer, byteCount: Long) {
+            var remaining = byteCount
+            while (remaining > 0) {
+                val count = source.read(compressor.input, 0, Math.min(remaining, compressor.input.size.toLong()).toInt())
+                if (count <= 0) break
+
+                compressor.crc.update(compressor.input, 0, count)
+                compressor.deflater.setInput(compressor.input, 0, count)
+                while (!compressor.deflater.needsInput()) {
+                    drain()
+                }
+
+                uncompressedLength += count
+                remaining -= count
+            }
+        }
+
+        fun finish() {
+            val deflater = compressor.deflater
+            deflater.finish()
+            while (!deflater.finished()) {
+                drain()
+            }
+
+            // The trailer: CRC32 and the uncompressed length (mod 2^32), both little-endian
+            sink.writeIntLe(compressor.crc.value.toInt())
+            sink.writeIntLe(uncompressedLength.toInt())
+            compressedLength += 8
+            sink.emit()
+        }
+
+        private fun drain() {
+            val count = compressor.deflater.deflate(compressor.output)
+            if (count > 0) {
+                sink.write(compressor.output, 0, count)
+                compressedLength += count
+            }
+        }
+
+        override fun flush() {
+            sink.flush()
+        }
+
+        override fun timeout(): Timeout {
+            return sink.timeout()
+        }
+
+        override fun close() {
+            // The underlying sink belongs to the request
+        }
+    }
+}
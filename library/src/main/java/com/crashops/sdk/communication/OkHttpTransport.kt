@@ -0,0 +1,43 @@
+package com.crashops.sdk.communication
+
+import okhttp3.*
+import java.io.IOException
+import java.util.concurrent.TimeUnit
+
+/**
+ * The default [Transport], pass the host's client to share its connection pool and dispatcher.
+ */
+class OkHttpTransport @JvmOverloads constructor(private val client: OkHttpClient = defaultClient()) : Transport {
+    companion object {
+        /**
+         * Uploads come in bursts, the few connections they need are kept between bursts.
+         */
+        private const val MAX_IDLE_CONNECTIONS = 2
+        private const val KEEP_ALIVE_MINUTES: Long = 5
+
+        /**
+         * HTTP/2 (wherever ALPN is available) multiplexes the concurrent reports of a pass onto a single connection.
+         */
+        @JvmStatic
+        fun defaultClient(): OkHttpClient {
+            return OkHttpClient.Builder()
+                    .connectTimeout(30, TimeUnit.SECONDS)
+                    .connectionPool(ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                    .protocols(listOf(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                    .build()
+        }
+    }
+
+    override fun enqueue(request: Request, listener: Transport.Listener) {
+        client.newCall(request)
+                .enqueue(object : Callback {
+                    override fun onFailure(call: Call, e: IOException) {
+                        listener.onFailure(request, e)
+                    }
+
+                    override fun onResponse(call: Call, response: Response) {
+                        listener.onResponse(request, response)
+                    }
+                })
+    }
+}
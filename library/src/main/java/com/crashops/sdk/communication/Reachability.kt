@@ -2,8 +2,12 @@ package com.crashops.sdk.communication
 
 import android.content.Context
 import android.net.ConnectivityManager
+import android.net.Network
 import android.net.NetworkCapabilities
+import android.net.NetworkRequest
 import android.os.Build
+import com.crashops.sdk.util.PrivateEventBus
+import com.crashops.sdk.util.SdkLogger
 
 class Reachability {
     enum class NetworkStatus {
@@ -46,5 +50,46 @@ class Reachability {
 
             return result
         }
+
+        private var networkCallback: ConnectivityManager.NetworkCallback? = null
+
+        /**
+         * Emits [PrivateEventBus.Action.ON_NETWORK_ACTIVE] whenever a network becomes available (API 21 and above).
+         */
+        @JvmStatic
+        fun observeNetworks(context: Context) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) return
+            if (networkCallback != null) return
+
+            val applicationContext = context.applicationContext
+            val connectivityManager =
+                    applicationContext.getSystemService(Context.CONNECTIVITY_SERVICE) as ConnectivityManager
+            val callback = object : ConnectivityManager.NetworkCallback() {
+                override fun onAvailable(network: Network) {
+                    PrivateEventBus.notify(PrivateEventBus.Action.ON_NETWORK_ACTIVE, null, applicationContext)
+                }
+            }
+
+            try {
+                val request = NetworkRequest.Builder()
+                        .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                        .build()
+                connectivityManager.registerNetworkCallback(request, callback)
+                networkCallback = callback
+            } catch (e: Exception) {
+                // e.g. a SecurityException when ACCESS_NETWORK_STATE is missing
+                SdkLogger.error(Reachability::class.java.simpleName, e)
+            }
+        }
+
+        /**
+         * Tells whether the active network is metered (usually cellular, sometimes a tethered Wi-Fi).
+         */
+        @JvmStatic
+        fun isActiveNetworkMetered(context: Context): Boolean {
+            val connectivityManager =
+                    context.getSystemService(Context.CONNECTIVITY_SERVICE) as ConnectivityManager
+            return connectivityManager.isActiveNetworkMetered
+        }
     }
 }
\ No newline at end of file
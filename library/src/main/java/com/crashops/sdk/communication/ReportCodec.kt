@@ -0,0 +1,59 @@
+package com.crashops.sdk.communication
+
+import com.crashops.sdk.configuration.Configurations
+import okhttp3.MediaType
+import okio.BufferedSink
+import okio.Okio
+import java.io.IOException
+import java.io.InputStream
+
+/**
+ * Encodes a stored (JSON) report into the wire format of the upload request.
+ */
+interface ReportCodec {
+    val name: String
+    val contentType: MediaType?
+
+    /**
+     * @return The encoded length, or -1 if it's unknown before encoding.
+     */
+    fun encodedLength(jsonLength: Long): Long
+
+    @Throws(IOException::class)
+    fun encode(json: InputStream, sink: BufferedSink)
+
+    companion object {
+        /**
+         * Configured formats are used only after the server advertised them, JSON is always understood.
+         */
+        @JvmStatic
+        fun negotiated(): ReportCodec {
+            val configuredFormat = Configurations.reportWireFormat()
+            if (configuredFormat.equals(CborReportCodec.name, ignoreCase = true) &&
+                    ServerCapabilities.instance.supports(ServerCapabilities.CBOR)) {
+                return CborReportCodec
+            }
+
+            return JsonReportCodec
+        }
+    }
+}
+
+/**
+ * The stored reports are already JSON, they're copied as is.
+ */
+object JsonReportCodec : ReportCodec {
+    override val name: String = "json"
+
+    override val contentType: MediaType? = MediaType.parse("application/json; charset=utf-8")
+
+    override fun encodedLength(jsonLength: Long): Long {
+        return jsonLength
+    }
+
+    override fun encode(json: InputStream, sink: BufferedSink) {
+        Okio.source(json).use { source ->
+            sink.writeAll(source)
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.crashops.sdk.communication
+
+import com.crashops.sdk.util.SdkLogger
+import org.json.JSONObject
+import java.io.*
+import java.util.*
+
+/**
+ * A stored report on its way to the server, streamed straight from its file.
+ *
+ * Extra top-level fields (e.g. the screen traces) are spliced in right before the report's closing brace,
+ * so the report itself is never parsed nor loaded into memory.
+ */
+class ReportPayload private constructor(val file: File, private val closingBraceOffset: Long, private val isEmptyObject: Boolean) {
+
+    companion object {
+        private val TAG: String = ReportPayload::class.java.simpleName
+
+        /**
+         * @return The payload, or `null` if the file doesn't end like a JSON object.
+         */
+        fun from(file: File): ReportPayload? {
+            return try {
+                RandomAccessFile(file, "r").use { reportFile ->
+                    val closingBraceOffset = reportFile.lastNonWhitespaceOffset(reportFile.length() - 1)
+                    if (closingBraceOffset < 0 || reportFile.byteAt(closingBraceOffset) != '}'.toInt()) {
+                        return null
+                    }
+
+                    val previousOffset = reportFile.lastNonWhitespaceOffset(closingBraceOffset - 1)
+                    if (previousOffset < 0) return null
+
+                    ReportPayload(file, closingBraceOffset, reportFile.byteAt(previousOffset) == '{'.toInt())
+                }
+            } catch (e: IOException) {
+                SdkLogger.error(TAG, e)
+                null
+            }
+        }
+
+        private fun RandomAccessFile.byteAt(offset: Long): Int {
+            seek(offset)
+            return read()
+        }
+
+        private fun RandomAccessFile.lastNonWhitespaceOffset(fromOffset: Long): Long {
+            var offset = fromOffset
+            while (offset >= 0) {
+                if (!Character.isWhitespace(byteAt(offset))) return offset
+                offset--
+            }
+
+            return -1
+        }
+    }
+
+    private val splices: LinkedHashMap<String, ByteArray> = linkedMapOf()
+    private var _splicedBytes: ByteArray? = null
+
+    /**
+     * Adds a top-level field to the uploaded report, replaces a previous splice with the same key.
+     * @param jsonValue An already serialized JSON value (object, array, string literal, etc.).
+     */
+    fun splice(key: String, jsonValue: String): ReportPayload {
+        splices[key] = jsonValue.toByteArray(Charsets.UTF_8)
+        _splicedBytes = null
+        return this
+    }
+
+    fun hasSplice(key: String): Boolean {
+        return splices.containsKey(key)
+    }
+
+    private val splicedBytes: ByteArray
+        get() {
+            _splicedBytes?.let { return it }
+
+            val output = ByteArrayOutputStream()
+            var needsComma = !isEmptyObject
+            splices.forEach { (key, value) ->
+                if (needsComma) {
+                    output.write(','.toInt())
+                }
+                output.write(JSONObject.quote(key).toByteArray(Charsets.UTF_8))
+                output.write(':'.toInt())
+                output.write(value)
+                needsComma = true
+            }
+
+            val bytes = output.toByteArray()
+            _splicedBytes = bytes
+            return bytes
+        }
+
+    fun contentLength(): Long {
+        return file.length() + splicedBytes.size
+    }
+
+    /**
+     * Opens a fresh stream of the whole report, every call reads the file again from its beginning.
+     */
+    @Throws(IOException::class)
+    fun open(): InputStream {
+        val head = BoundedInputStream(FileInputStream(file), closingBraceOffset)
+        val tail = FileInputStream(file)
+        var skipped = 0L
+        while (skipped < closingBraceOffset) {
+            val skippedNow = tail.skip(closingBraceOffset - skipped)
+            if (skippedNow <= 0) break
+            skipped += skippedNow
+        }
+
+        val parts = Vector<InputStream>(3)
+        parts.add(head)
+        parts.add(ByteArrayInputStream(splicedBytes))
+        parts.add(tail)
+
+        return SequenceInputStream(parts.elements())
+    }
+
+    private class BoundedInputStream(inputStream: InputStream, private var remaining: Long) : FilterInputStream(inputStream) {
+        override fun read(): Int {
+            if (remaining <= 0) return -1
+
+            val byte = super.read()
+            if (byte >= 0) remaining--
+            return byte
+        }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            if (remaining <= 0) return -1
+
+            val count = super.read(b, off, Math.min(len.toLong(), remaining).toInt())
+            if (count > 0) remaining -= count
+            return count
+        }
+
+        override fun skip(n: Long): Long {
+            val skipped = super.skip(Math.min(n, remaining))
+            remaining -= skipped
+            return skipped
+        }
+
+        override fun available(): Int {
+            return Math.min(super.available().toLong(), remaining).toInt()
+        }
+
+        override fun markSupported(): Boolean {
+            return false
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.crashops.sdk.communication
+
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okio.Buffer
+import okio.BufferedSink
+import okio.ForwardingSink
+import okio.Okio
+
+/**
+ * Streams a [ReportPayload] from disk into the request through the given codec, nothing is buffered beyond Okio's segments.
+ */
+class ReportRequestBody(private val payload: ReportPayload, private val codec: ReportCodec = JsonReportCodec) : RequestBody() {
+    /**
+     * The length of the encoded body, known once the body was written and -1 before that (the codec may not know it upfront).
+     */
+    @Volatile
+    var encodedLength: Long = -1
+        private set
+
+    override fun contentType(): MediaType? {
+        return codec.contentType
+    }
+
+    override fun contentLength(): Long {
+        return codec.encodedLength(payload.contentLength())
+    }
+
+    override fun writeTo(sink: BufferedSink) {
+        var writtenLength = 0L
+        val countingSink = Okio.buffer(object : ForwardingSink(sink) {
+            override fun write(source: Buffer, byteCount: Long) {
+                super.write(source, byteCount)
+                writtenLength += byteCount
+            }
+        })
+
+        codec.encode(payload.open(), countingSink)
+        countingSink.emit()
+        encodedLength = writtenLength
+    }
+}
@@ -0,0 +1,78 @@
+package com.crashops.sdk.communication
+
+import android.content.Context
+import com.crashops.sdk.COHostApplication
+import com.crashops.sdk.util.Constants
+import com.crashops.sdk.util.SdkLogger
+
+/**
+ * Remembers what the server advertised in its last response, the SDK keeps speaking the oldest protocol until told otherwise.
+ */
+class ServerCapabilities private constructor() {
+    companion object {
+        @JvmStatic
+        val instance: ServerCapabilities = ServerCapabilities()
+
+        private val TAG: String = ServerCapabilities::class.java.simpleName
+
+        /**
+         * A comma separated list of capabilities, may appear on any response.
+         */
+        const val HEADER = "crashops-capabilities"
+
+        /**
+         * Session headers are uploaded once per session and reports reference them by their `sessionId`.
+         */
+        const val SCHEMA_V2 = "schema-v2"
+
+        /**
+         * Reports may be encoded in CBOR, see [CborReportCodec].
+         */
+        const val CBOR = "cbor"
+
+        /**
+         * Screen traces may be uploaded as keyframes and deltas, see [com.crashops.sdk.data.model.TraceDeltaEncoder].
+         */
+        const val TRACE_DELTAS = "trace-deltas"
+
+        /**
+         * Large reports may be uploaded in resumable parts, see [com.crashops.sdk.service.ResumableUploader].
+         */
+        const val RESUMABLE_UPLOADS = "resumable-uploads"
+
+        /**
+         * Request bodies may be gzipped (`Content-Encoding: gzip`), see [GzipRequestBody].
+         */
+        const val GZIP = "gzip"
+    }
+
+    private var _capabilities: Set<String>? = null
+    private val capabilities: Set<String>
+        get() {
+            _capabilities?.let { return it }
+
+            val stored = preferences().getStringSet(Constants.Keys.ServerCapabilities, null)?.toSet() ?: setOf()
+            _capabilities = stored
+            return stored
+        }
+
+    fun supports(capability: String): Boolean {
+        return capabilities.contains(capability)
+    }
+
+    fun onAdvertised(headerValue: String) {
+        val advertised = headerValue.split(',')
+                .map { it.trim() }
+                .filter { it.isNotEmpty() }
+                .toSet()
+
+        if (advertised == capabilities) return
+
+        SdkLogger.log(TAG, "server capabilities changed: $advertised")
+        _capabilities = advertised
+        preferences().edit().putStringSet(Constants.Keys.ServerCapabilities, advertised).apply()
+    }
+
+    private fun preferences() = COHostApplication.shared()
+            .getSharedPreferences(Constants.Keys.LogsPersistenceFileName, Context.MODE_PRIVATE)
+}
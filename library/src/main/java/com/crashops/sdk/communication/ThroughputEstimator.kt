@@ -0,0 +1,98 @@
+package com.crashops.sdk.communication
+
+import android.content.Context
+import com.crashops.sdk.COHostApplication
+import com.crashops.sdk.data.toJson
+import com.crashops.sdk.util.Constants
+import com.crashops.sdk.util.SdkLogger
+import org.json.JSONObject
+
+/**
+ * Keeps a moving estimate (EWMA) of the upload throughput and the round-trip time of every network type,
+ * fed by the requests [Communicator] sends and persisted so the next process starts from the last estimate.
+ */
+class ThroughputEstimator private constructor() {
+    class Estimate(val bytesPerSecond: Double, val roundTripMilliseconds: Double) {
+        override fun toString(): String {
+            return "{throughput: ${bytesPerSecond.toLong()} B/s, rtt: ${roundTripMilliseconds.toLong()} ms}"
+        }
+    }
+
+    companion object {
+        @JvmStatic
+        val instance: ThroughputEstimator = ThroughputEstimator()
+
+        private val TAG: String = ThroughputEstimator::class.java.simpleName
+
+        /**
+         * The weight of every new sample.
+         */
+        private const val ALPHA = 0.3
+
+        /**
+         * Smaller request bodies measure only the round trip.
+         */
+        private const val MIN_THROUGHPUT_SAMPLE_BYTES: Long = 16 * 1024
+
+        private const val THROUGHPUT = "throughput"
+        private const val RTT = "rtt"
+
+        private fun defaultEstimate(networkStatus: Reachability.NetworkStatus): Estimate {
+            return when (networkStatus) {
+                Reachability.NetworkStatus.WiFi, Reachability.NetworkStatus.Cable -> Estimate(512.0 * 1024, 100.0)
+                Reachability.NetworkStatus.Cellular -> Estimate(32.0 * 1024, 400.0)
+                else -> Estimate(16.0 * 1024, 600.0)
+            }
+        }
+    }
+
+    private var _estimates: JSONObject? = null
+    private val estimates: JSONObject
+        get() {
+            _estimates?.let { return it }
+
+            val stored = preferences().getString(Constants.Keys.ThroughputEstimates, null)?.toJson() ?: JSONObject()
+            _estimates = stored
+            return stored
+        }
+
+    @Synchronized
+    fun estimate(networkStatus: Reachability.NetworkStatus): Estimate {
+        val stored = estimates.optJSONObject(networkStatus.name) ?: return defaultEstimate(networkStatus)
+        val defaults = defaultEstimate(networkStatus)
+
+        return Estimate(stored.optDouble(THROUGHPUT, defaults.bytesPerSecond), stored.optDouble(RTT, defaults.roundTripMilliseconds))
+    }
+
+    /**
+     * @param bodyBytes The request body's length (-1 if unknown), the response bodies are tiny.
+     * @param elapsedMilliseconds From sending the request until its response arrived.
+     */
+    @Synchronized
+    fun onRequestCompleted(networkStatus: Reachability.NetworkStatus, bodyBytes: Long, elapsedMilliseconds: Long) {
+        if (bodyBytes < 0 || elapsedMilliseconds <= 0 || networkStatus == Reachability.NetworkStatus.None) return
+
+        val current = estimate(networkStatus)
+        val updated = if (bodyBytes < MIN_THROUGHPUT_SAMPLE_BYTES) {
+            Estimate(current.bytesPerSecond, ewma(current.roundTripMilliseconds, elapsedMilliseconds.toDouble()))
+        } else {
+            val transferMilliseconds = Math.max(elapsedMilliseconds - current.roundTripMilliseconds, 1.0)
+            Estimate(ewma(current.bytesPerSecond, bodyBytes * 1000 / transferMilliseconds), current.roundTripMilliseconds)
+        }
+
+        val stored = JSONObject()
+        stored.put(THROUGHPUT, updated.bytesPerSecond)
+        stored.put(RTT, updated.roundTripMilliseconds)
+        estimates.put(networkStatus.name, stored)
+        preferences().edit().putString(Constants.Keys.ThroughputEstimates, estimates.toString()).apply()
+
+        SdkLogger.log(TAG, "$networkStatus: $updated")
+    }
+
+    private fun ewma(average: Double, sample: Double): Double {
+        return average + ALPHA * (sample - average)
+    }
+
+    private fun preferences() = COHostApplication.shared()
+            .getSharedPreferences(Constants.Keys.LogsPersistenceFileName, Context.MODE_PRIVATE)
+}
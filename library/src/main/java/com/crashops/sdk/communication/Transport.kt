@@ -0,0 +1,25 @@
+package com.crashops.sdk.communication
+
+import okhttp3.Request
+import okhttp3.Response
+import java.io.IOException
+
+/**
+ * Carries [Communicator]'s requests, the host application may supply its own (e.g. to share its OkHttp client).
+ * @see OkHttpTransport
+ */
+interface Transport {
+    interface Listener {
+        /**
+         * Invoked on the transport's thread, the listener consumes (and closes) the response's body.
+         */
+        fun onResponse(request: Request, response: Response)
+
+        fun onFailure(request: Request, exception: IOException)
+    }
+
+    /**
+     * Sends the request asynchronously, the listener must be invoked exactly once.
+     */
+    fun enqueue(request: Request, listener: Listener)
+}
@@ -42,4 +42,80 @@ public class Configurations {
     public static boolean shouldExportWireframes() {
         return isEnabled() && isTracingScreens();
     }
+
+    /**
+     * @return {@code true} if reports carry a wireframe of the screen they were logged on.
+     */
+    public static boolean isAttachingWireframes() {
+        return shouldExportWireframes() && ConfigurationsProvider.getBoolean(R.bool.co_is_attaching_wireframes, false);
+    }
+
+    public static final String SCREEN_TRACES_MODE_ON_CRASH = "on_crash";
+
+    /**
+     * @return {@code true} if screens are captured only when a crash or an error is logged.
+     */
+    public static boolean isCapturingScreensOnCrash() {
+        return ConfigurationsProvider.getString(R.string.co_screen_traces_mode).equalsIgnoreCase(SCREEN_TRACES_MODE_ON_CRASH);
+    }
+
+    public static int screenTracesMaxNodes() {
+        return ConfigurationsProvider.getInteger(R.integer.co_screen_traces_max_nodes);
+    }
+
+    public static int screenTracesMaxDepth() {
+        return ConfigurationsProvider.getInteger(R.integer.co_screen_traces_max_depth);
+    }
+
+    public static long screenTracesFrameBudgetNanoseconds() {
+        return ConfigurationsProvider.getInteger(R.integer.co_screen_traces_frame_budget_milliseconds) * 1_000_000L;
+    }
+
+    public static long screenTracesQuietPeriodMilliseconds() {
+        return ConfigurationsProvider.getInteger(R.integer.co_screen_traces_quiet_period_milliseconds);
+    }
+
+    public static int screenTracesRingCapacity() {
+        return ConfigurationsProvider.getInteger(R.integer.co_screen_traces_ring_capacity);
+    }
+
+    public static int errorSamplingPercent() {
+        return ConfigurationsProvider.getInteger(R.integer.co_error_sampling_percent);
+    }
+
+    public static final String THREAD_DUMP_POLICY_ALL = "all";
+    public static final String THREAD_DUMP_POLICY_FATAL = "fatal";
+
+    public static boolean shouldDumpAllThreads(boolean isFatal) {
+        String policy = ConfigurationsProvider.getString(R.string.co_thread_dump_policy);
+        return policy.equalsIgnoreCase(THREAD_DUMP_POLICY_ALL) || (isFatal && policy.equalsIgnoreCase(THREAD_DUMP_POLICY_FATAL));
+    }
+
+    public static long remoteConfigurationRefreshMilliseconds() {
+        return ConfigurationsProvider.getInteger(R.integer.co_remote_config_refresh_hours) * Constants.ONE_HOUR_MILLISECONDS;
+    }
+
+    public static long dailyCellularBytesBudget() {
+        return ConfigurationsProvider.getInteger(R.integer.co_daily_cellular_bytes_budget);
+    }
+
+    public static long uploadPassTargetMilliseconds() {
+        return ConfigurationsProvider.getInteger(R.integer.co_upload_pass_target_seconds) * Constants.ONE_SECOND_MILLISECONDS;
+    }
+
+    public static int requestCompressionThresholdBytes() {
+        return ConfigurationsProvider.getInteger(R.integer.co_request_compression_threshold_bytes);
+    }
+
+    public static int circuitBreakerFailureThreshold() {
+        return ConfigurationsProvider.getInteger(R.integer.co_circuit_breaker_failure_threshold);
+    }
+
+    public static long circuitBreakerOpenMilliseconds() {
+        return ConfigurationsProvider.getInteger(R.integer.co_circuit_breaker_open_seconds) * Constants.ONE_SECOND_MILLISECONDS;
+    }
+
+    public static String reportWireFormat() {
+        return ConfigurationsProvider.getString(R.string.co_report_wire_format);
+    }
 }
\ No newline at end of file
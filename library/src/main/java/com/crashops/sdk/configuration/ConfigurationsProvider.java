@@ -21,22 +21,40 @@ import com.crashops.sdk.util.SdkLogger;
 
 import java.lang.reflect.Field;
 import java.util.HashMap;
+import java.util.HashSet;
 
 /**
  * Created by Perry on 08/03/2018.
  * Provides a configurable provider for RUNTIME configurations from XML resource files.
  *
  * The custom configurations will take effect only if when the attributes are accessed programmatically (in contrary when they are configured only via the XML layouts / animations / drawable).
+ *
+ * Values are resolved in layers: the host's custom values, then the server's ({@link RemoteConfigurations}), then the XML defaults.
  */
 public class ConfigurationsProvider {
     private static final String TAG = ConfigurationsProvider.class.getSimpleName();
     private static final String SHARED_PREFERENCES_FILE_NAME = "runtime-config";
 
-    static private SparseArray<Object> values;
+    /**
+     * The resolved values. Like {@link #remoteValues} it's never mutated once published, it's replaced by an updated copy
+     * (which only happens once per resource, or when a value is set).
+     */
+    static private volatile SparseArray<Object> values;
+    /**
+     * Never mutated once published, so it's read without a lock.
+     */
+    static private volatile SparseArray<Object> remoteValues;
+    /**
+     * Bumped whenever a layer changes, a value resolved before that isn't cached (see {@link #cacheResolvedValue}).
+     */
+    static private volatile int valuesGeneration;
+    static private final HashSet<Integer> hostValueIds;
     private static final SharedPreferences sharedPreferences;
 
     static {
         values = new SparseArray<>();
+        remoteValues = new SparseArray<>();
+        hostValueIds = new HashSet<>();
 
         Context context = COHostApplication.sharedInstance();
         sharedPreferences = context.getSharedPreferences(SHARED_PREFERENCES_FILE_NAME, Context.MODE_PRIVATE);
@@ -49,15 +67,18 @@ public class ConfigurationsProvider {
     public static boolean getBoolean(@BoolRes int resId, boolean defaultValue) {
         Boolean result = (Boolean) values.get(resId);
         if (result == null) {
+            int generation = valuesGeneration;
             Context context = COHostApplication.sharedInstance();
             try {
-                result = sharedPreferences.getBoolean(String.valueOf(resId), context.getResources().getBoolean(resId));
+                Object remoteValue = remoteValue(resId);
+                boolean defaultResult = remoteValue instanceof Boolean ? (Boolean) remoteValue : context.getResources().getBoolean(resId);
+                result = sharedPreferences.getBoolean(String.valueOf(resId), defaultResult);
             } catch (Resources.NotFoundException e) {
                 // Theoretically speaking, this should never happen....
                 result = defaultValue;
             }
 
-            values.put(resId, result);
+            cacheResolvedValue(resId, result, generation);
         }
 
         return result;
@@ -66,10 +87,11 @@ public class ConfigurationsProvider {
     public static float getDimension(@DimenRes int resId) {
         Float result = (Float) values.get(resId);
         if (result == null) {
+            int generation = valuesGeneration;
             Context context = COHostApplication.sharedInstance();
             try {
                 result = sharedPreferences.getFloat(String.valueOf(resId), context.getResources().getDimension(resId));
-                values.put(resId, result);
+                cacheResolvedValue(resId, result, generation);
             } catch (Resources.NotFoundException e) {
                 SdkLogger.error(TAG, "getDimension: " + e);
                 result = (float) -1;
@@ -82,10 +104,11 @@ public class ConfigurationsProvider {
     public static Drawable getDrawable(@DrawableRes int resId) {
         Drawable result = (Drawable) values.get(resId);
         if (result == null) {
+            int generation = valuesGeneration;
             Context context = COHostApplication.sharedInstance();
             try {
                 result = ResourcesCompat.getDrawable(context.getResources(), resId, null);
-                values.put(resId, result);
+                cacheResolvedValue(resId, result, generation);
             } catch (Resources.NotFoundException e) {
                 SdkLogger.error(TAG, "getDrawable: " + e);
             }
@@ -97,9 +120,12 @@ public class ConfigurationsProvider {
     public static int getInteger(@IntegerRes int resId) throws Resources.NotFoundException {
         Integer result = (Integer) values.get(resId);
         if (result == null) {
+            int generation = valuesGeneration;
             Context context = COHostApplication.sharedInstance();
-            result = sharedPreferences.getInt(String.valueOf(resId), context.getResources().getInteger(resId));
-            values.put(resId, result);
+            Object remoteValue = remoteValue(resId);
+            int defaultResult = remoteValue instanceof Integer ? (Integer) remoteValue : context.getResources().getInteger(resId);
+            result = sharedPreferences.getInt(String.valueOf(resId), defaultResult);
+            cacheResolvedValue(resId, result, generation);
         }
 
         return result;
@@ -108,9 +134,12 @@ public class ConfigurationsProvider {
     public static String getString(@StringRes int resId) throws Resources.NotFoundException {
         String result = (String) values.get(resId);
         if (result == null) {
+            int generation = valuesGeneration;
             Context context = COHostApplication.sharedInstance();
-            result = sharedPreferences.getString(String.valueOf(resId), context.getResources().getString(resId));
-            values.put(resId, result);
+            Object remoteValue = remoteValue(resId);
+            String defaultResult = remoteValue instanceof String ? (String) remoteValue : context.getResources().getString(resId);
+            result = sharedPreferences.getString(String.valueOf(resId), defaultResult);
+            cacheResolvedValue(resId, result, generation);
         }
 
         return result;
@@ -119,10 +148,11 @@ public class ConfigurationsProvider {
     public static int getColor(@ColorRes int resId) {
         Integer result = (Integer) values.get(resId);
         if (result == null) {
+            int generation = valuesGeneration;
             Context context = COHostApplication.sharedInstance();
             try {
                 result = sharedPreferences.getInt(String.valueOf(resId), ResourcesCompat.getColor(context.getResources(), resId, null));
-                values.put(resId, result);
+                cacheResolvedValue(resId, result, generation);
             } catch (Resources.NotFoundException e){
                 SdkLogger.error(TAG, "getColor: " + e);
                 result = -1;
@@ -202,12 +232,76 @@ public class ConfigurationsProvider {
     }
 
     private static void save(int resId, @Nullable Object resValue) {
+        synchronized (ConfigurationsProvider.class) {
+            if (resValue == null) {
+                hostValueIds.remove(resId);
+            } else {
+                hostValueIds.add(resId);
+            }
+
+            valuesGeneration++;
+            cacheValue(resId, resValue);
+        }
+
         if (resValue == null) {
-            values.remove(resId);
             sharedPreferences.edit().remove(String.valueOf(resId)).apply();
+        }
+    }
+
+    /**
+     * Replaces the server's layer, the values set by the host still win.
+     * @param newRemoteValues Values by resource ID (booleans, integers and strings), copied.
+     */
+    public static void setRemoteValues(SparseArray<Object> newRemoteValues) {
+        synchronized (ConfigurationsProvider.class) {
+            SparseArray<Object> previousRemoteValues = remoteValues;
+            remoteValues = newRemoteValues.clone();
+            valuesGeneration++;
+
+            SparseArray<Object> updatedValues = values.clone();
+            invalidateCachedValues(updatedValues, previousRemoteValues);
+            invalidateCachedValues(updatedValues, newRemoteValues);
+            values = updatedValues;
+        }
+    }
+
+    private static void invalidateCachedValues(SparseArray<Object> cachedValues, SparseArray<Object> remoteValues) {
+        for (int i = 0; i < remoteValues.size(); i++) {
+            int resId = remoteValues.keyAt(i);
+            if (!hostValueIds.contains(resId)) {
+                cachedValues.remove(resId);
+            }
+        }
+    }
+
+    /**
+     * Drops the value if a layer changed since it was resolved, a getter that read the previous layers mustn't cache
+     * what was just invalidated.
+     * @param generation The {@link #valuesGeneration} before the value was resolved.
+     */
+    private static synchronized void cacheResolvedValue(int resId, @Nullable Object value, int generation) {
+        if (generation != valuesGeneration) return;
+
+        cacheValue(resId, value);
+    }
+
+    /**
+     * @param value {@code null} removes the cached value.
+     */
+    private static synchronized void cacheValue(int resId, @Nullable Object value) {
+        SparseArray<Object> updatedValues = values.clone();
+        if (value == null) {
+            updatedValues.remove(resId);
         } else {
-            values.put(resId, resValue);
+            updatedValues.put(resId, value);
         }
+
+        values = updatedValues;
+    }
+
+    @Nullable
+    private static Object remoteValue(int resId) {
+        return remoteValues.get(resId);
     }
 
     /**
@@ -0,0 +1,161 @@
+package com.crashops.sdk.configuration
+
+import android.content.Context
+import android.util.SparseArray
+import com.crashops.sdk.COHostApplication
+import com.crashops.sdk.R
+import com.crashops.sdk.communication.Communicator
+import com.crashops.sdk.data.toJson
+import com.crashops.sdk.util.Constants
+import com.crashops.sdk.util.SdkLogger
+import com.crashops.sdk.util.Utils
+import org.json.JSONObject
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * The server's layer of the runtime configuration, so sampling, thread dumps, tracing and upload limits can be dialed
+ * without a new release of the host application.
+ *
+ * The document is a flat JSON object keyed by the names in `crashops_config.xml`, e.g. `{"co_error_sampling_percent": 10}`.
+ * It's cached with its `ETag` and fetched at most once per [Configurations.remoteConfigurationRefreshMilliseconds].
+ * Failed fetches are retried with an exponential backoff, capped at that interval.
+ * Values set by the host (see [ConfigurationsProvider.set]) always win.
+ */
+class RemoteConfigurations private constructor() {
+    companion object {
+        @JvmStatic
+        val instance: RemoteConfigurations = RemoteConfigurations()
+
+        private val TAG: String = RemoteConfigurations::class.java.simpleName
+
+        private const val NAME_PREFIX = "co_"
+
+        /**
+         * Only the host decides which account receives its logs.
+         */
+        private val LOCAL_ONLY_NAMES = setOf("co_crashops_app_key")
+
+        private const val RETRY_MILLISECONDS: Long = Constants.ONE_MINUTE_MILLISECONDS
+    }
+
+    private val isFetching = AtomicBoolean(false)
+    private val didApplyStored = AtomicBoolean(false)
+
+    /**
+     * The R classes are scanned by reflection once, and never on the main thread (see [apply]).
+     */
+    private val booleanIds: Map<String, Int> by lazy { idsByName(R.bool::class.java) }
+    private val integerIds: Map<String, Int> by lazy { idsByName(R.integer::class.java) }
+    private val stringIds: Map<String, Int> by lazy { idsByName(R.string::class.java) }
+
+    /**
+     * Applies the cached document (once per process) and fetches a fresh one if it's time to.
+     */
+    fun refreshIfNeeded() {
+        if (didApplyStored.compareAndSet(false, true)) {
+            preferences().getString(Constants.Keys.RemoteConfiguration, null)?.toJson()?.let { document ->
+                // Until it's applied the XML defaults are in effect, as before the first fetch
+                COHostApplication.shared().runInBackgroundThread { apply(document) }
+            }
+        }
+
+        val lastFetch = preferences().getLong(Constants.Keys.RemoteConfigurationFetchTime, 0)
+        if (Utils.now() - lastFetch < refreshMilliseconds()) return
+        if (!isFetching.compareAndSet(false, true)) return
+
+        val hasCachedDocument = preferences().contains(Constants.Keys.RemoteConfiguration)
+        val eTag = if (hasCachedDocument) preferences().getString(Constants.Keys.RemoteConfigurationETag, null) else null
+
+        Communicator.instance.fetchConfiguration(eTag) { result, responseETag ->
+            val response = result as? Pair<*, *>
+            val httpResponseCode = response?.first as? Int ?: 0
+
+            when {
+                httpResponseCode == 304 -> {
+                    SdkLogger.log(TAG, "configuration is up to date")
+                    preferences().edit()
+                            .putLong(Constants.Keys.RemoteConfigurationFetchTime, Utils.now())
+                            .remove(Constants.Keys.RemoteConfigurationFailuresCount)
+                            .apply()
+                }
+                httpResponseCode in 200..299 -> {
+                    val document = (response?.second as? String)?.toJson()
+                    if (document != null) {
+                        SdkLogger.log(TAG, "configuration updated: $document")
+                        preferences().edit()
+                                .putString(Constants.Keys.RemoteConfiguration, document.toString())
+                                .putString(Constants.Keys.RemoteConfigurationETag, responseETag)
+                                .putLong(Constants.Keys.RemoteConfigurationFetchTime, Utils.now())
+                                .remove(Constants.Keys.RemoteConfigurationFailuresCount)
+                                .apply()
+                        apply(document)
+                    } else {
+                        SdkLogger.error(TAG, "configuration isn't a JSON object")
+                        onFetchFailed()
+                    }
+                }
+                else -> {
+                    SdkLogger.error(TAG, "configuration fetch failed ($httpResponseCode)")
+                    onFetchFailed()
+                }
+            }
+
+            isFetching.set(false)
+        }
+    }
+
+    /**
+     * Counts the failure and records the attempt, so the next one waits for [refreshMilliseconds].
+     */
+    private fun onFetchFailed() {
+        val failuresCount = preferences().getInt(Constants.Keys.RemoteConfigurationFailuresCount, 0) + 1
+        preferences().edit()
+                .putInt(Constants.Keys.RemoteConfigurationFailuresCount, failuresCount)
+                .putLong(Constants.Keys.RemoteConfigurationFetchTime, Utils.now())
+                .apply()
+    }
+
+    /**
+     * The full refresh interval after a successful fetch, doubling from [RETRY_MILLISECONDS] up to it after failures.
+     */
+    private fun refreshMilliseconds(): Long {
+        val refreshMilliseconds = Configurations.remoteConfigurationRefreshMilliseconds()
+        val failuresCount = preferences().getInt(Constants.Keys.RemoteConfigurationFailuresCount, 0)
+        if (failuresCount == 0) return refreshMilliseconds
+
+        val retryMilliseconds = RETRY_MILLISECONDS shl Math.min(failuresCount - 1, 16)
+        return Math.min(retryMilliseconds, refreshMilliseconds)
+    }
+
+    /**
+     * Must not run on the main thread, the first call scans the R classes.
+     */
+    private fun apply(document: JSONObject) {
+        val remoteValues = SparseArray<Any>()
+        val names = document.keys()
+        while (names.hasNext()) {
+            val name = names.next()
+            if (!name.startsWith(NAME_PREFIX) || LOCAL_ONLY_NAMES.contains(name)) continue
+
+            val value = document.opt(name)
+            booleanIds[name]?.let { id ->
+                (value as? Boolean)?.let { remoteValues.put(id, it) }
+            }
+            integerIds[name]?.let { id ->
+                (value as? Number)?.let { remoteValues.put(id, it.toInt()) }
+            }
+            stringIds[name]?.let { id ->
+                (value as? String)?.let { remoteValues.put(id, it) }
+            }
+        }
+
+        ConfigurationsProvider.setRemoteValues(remoteValues)
+    }
+
+    private fun idsByName(rInnerClass: Class<*>): Map<String, Int> {
+        return ConfigurationsProvider.scanXmlIdsAndNames(rInnerClass).entries.associate { (id, name) -> name to id }
+    }
+
+    private fun preferences() = COHostApplication.shared()
+            .getSharedPreferences(Constants.Keys.LogsPersistenceFileName, Context.MODE_PRIVATE)
+}
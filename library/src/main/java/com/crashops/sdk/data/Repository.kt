@@ -9,9 +9,12 @@ import android.os.Bundle
 import com.crashops.sdk.COHostApplication
 import com.crashops.sdk.CrashOps
 import com.crashops.sdk.data.model.ActivityDetails
+import com.crashops.sdk.data.model.TracesReader
 import com.crashops.sdk.data.model.toJson
 import com.crashops.sdk.logic.ActivityTraceable
 import com.crashops.sdk.util.*
+import com.crashops.sdk.wireframe.WireframeRenderer
+import org.json.JSONArray
 import org.json.JSONException
 import org.json.JSONObject
 import java.io.File
@@ -175,6 +178,53 @@ class Repository {
         }
     }
 
+    private val sessionHeadersFolder: File? by lazy {
+        logsFolder?.let {
+            val created: Boolean
+            val sessionsDir = File(it.absolutePath, "sessions")
+            created = if (!sessionsDir.exists() || !sessionsDir.isDirectory) {
+                sessionsDir.mkdirs()
+            } else {
+                true
+            }
+
+            if (created) {
+                sessionsDir
+            } else {
+                null
+            }
+        } ?: run {
+            SdkLogger.internalError(TAG, "Couldn't get to device's cache folder")
+            null
+        }
+    }
+
+    /**
+     * Holds the encoded reports that are uploaded in resumable parts and their progress, see `ResumableUploader`.
+     */
+    val stagedUploadsFolder: File? by lazy {
+        logsFolder?.let {
+            val created: Boolean
+            val uploadsDir = File(it.absolutePath, "uploads")
+            created = if (!uploadsDir.exists() || !uploadsDir.isDirectory) {
+                uploadsDir.mkdirs()
+            } else {
+                true
+            }
+
+            if (created) {
+                uploadsDir
+            } else {
+                null
+            }
+        } ?: run {
+            SdkLogger.internalError(TAG, "Couldn't get to device's cache folder")
+            null
+        }
+    }
+
+    private var didStoreCurrentSessionHeader = false
+
     private var _previousCrashLogs: List<String>? = null
     var previousCrashLogs: List<String>
     get() {
@@ -371,6 +421,86 @@ class Repository {
         }
     }
 
+    /**
+     * Stores the current session's header once, the given closure won't be invoked if it's already stored.
+     * @return `false` if the header isn't stored, the logs must then carry its details themselves.
+     */
+    fun storeSessionHeaderIfNeeded(headerGenerator: () -> String): Boolean {
+        if (didStoreCurrentSessionHeader) return true
+
+        val sessionId = CrashOps.getInstance().sessionId
+        sessionHeadersFolder?.let { sessionsDir ->
+            val file = File(sessionsDir, "$sessionId.json")
+            if (file.exists()) {
+                didStoreCurrentSessionHeader = true
+                return true
+            }
+
+            // Written aside and renamed, a header that exists is always complete
+            val tempFile = File(sessionsDir, "$sessionId.json.tmp")
+            try {
+                tempFile.writeText(headerGenerator())
+                didStoreCurrentSessionHeader = tempFile.renameTo(file)
+            } catch (e: IOException) {
+                SdkLogger.internalError(TAG, e)
+            } finally {
+                if (!didStoreCurrentSessionHeader) {
+                    tempFile.delete()
+                }
+            }
+        }
+
+        return didStoreCurrentSessionHeader
+    }
+
+    fun loadSessionHeader(sessionId: String): JSONObject? {
+        val file = sessionHeadersFolder?.let { File(it, "$sessionId.json") } ?: return null
+        if (!file.exists()) return null
+
+        return file.readText().toJson()
+    }
+
+    /**
+     * Deletes the headers of sessions that have no stored logs left.
+     * @return The IDs of the sessions whose header was deleted.
+     */
+    fun pruneSessionHeaders(): List<String> {
+        val activeSessionIds = HashSet<String>()
+        activeSessionIds.add(CrashOps.getInstance().sessionId)
+        (loadCrashLogFiles() + loadErrorLogFiles()).forEach { logFile ->
+            sessionIdOf(logFile)?.let {
+                activeSessionIds.add(it)
+            }
+        }
+
+        val prunedSessionIds = arrayListOf<String>()
+        sessionHeadersFolder?.listFiles()?.forEach {
+            val sessionId = it.nameWithoutExtension
+            if (!activeSessionIds.contains(sessionId) && it.delete()) {
+                prunedSessionIds.add(sessionId)
+            }
+        }
+
+        return prunedSessionIds
+    }
+
+    /**
+     * Deletes the staged uploads of logs that are gone, including the temporary files ("<log>.upload.tmp") they were staged through.
+     */
+    fun pruneStagedUploads() {
+        val logFileNames = HashSet<String>()
+        (loadCrashLogFiles() + loadErrorLogFiles()).forEach { logFile ->
+            logFileNames.add(logFile.name)
+        }
+
+        stagedUploadsFolder?.listFiles()?.forEach {
+            val logFileName = it.name.removeSuffix(".tmp").substringBeforeLast('.')
+            if (!logFileNames.contains(logFileName)) {
+                it.delete()
+            }
+        }
+    }
+
     fun loadLogFileContent(filename: String): String? {
         val logsFolder = sdkFolder ?: return null
         val file = File(logsFolder, filename)
@@ -417,49 +547,108 @@ class Repository {
         return filesList
     }
 
+    /**
+     * Tells whether any log waits for an upload, without listing all of them.
+     */
+    fun hasPendingLogs(): Boolean {
+        return listOf(crashLogsFolder, errorLogsFolder).any { folder ->
+            folder?.list()?.any { it.endsWith("log") } ?: false
+        }
+    }
+
+    /**
+     * Reads the session ID from a stored log's file name, without opening the file.
+     */
+    fun sessionIdOf(logFile: File): String? {
+        val sessionId = logFile.nameWithoutExtension.substringAfterLast('_')
+        return if (SESSION_ID_PATTERN.matches(sessionId)) {
+            sessionId
+        } else {
+            null
+        }
+    }
+
     fun deleteDeviceId() {
         deleteExternalFile(Constants.Keys.DeviceId)
     }
 
+    /**
+     * The session's stored snapshots, ordered by time. A snapshot that was stored more than once (it was updated after
+     * a flush) appears only in its latest version.
+     */
     fun traces(sessionId: String): List<ActivityDetails> {
         return screenTracesFolder?.let { folder ->
             val tracesFolder = File(folder.absolutePath, sessionId)
 
-            val temp: List<ActivityDetails?>? = tracesFolder.listFiles()?.map {
-                val jsonString = it?.readText() ?: ""
-                ActivityDetails.from(jsonString)
+            // The files are named after the time they were written
+            val files = tracesFolder.listFiles()?.sortedBy { it.nameWithoutExtension.toLongOrNull() ?: 0 } ?: listOf()
+            val tracesByTimestamp = LinkedHashMap<Long, ActivityDetails>()
+            for (file in files) {
+                TracesReader.read(file).forEach {
+                    tracesByTimestamp[it.timestamp] = it
+                }
             }
 
-            temp?.filterNotNull()
+            tracesByTimestamp.values.sortedBy { it.timestamp }
         } ?: arrayListOf()
     }
 
-    /// This will replace the existing file if it already exists
-    fun persistBreadcrumb(activityDetails: ActivityDetails): Boolean {
-        val timestamp = activityDetails.timestamp
-        val filename = "$timestamp.log"
+    /**
+     * Renders the snapshot as a PNG wireframe into [screenshotsFolder], it's uploaded with the log (see [wireframeOf]).
+     *
+     * @param logFileName The name of the log that the wireframe belongs to.
+     * @return The PNG file, `null` if the snapshot has no views or it couldn't be written.
+     */
+    fun storeWireframe(activityDetails: ActivityDetails, logFileName: String): File? {
+        val folder = screenshotsFolder ?: return null
+        val png = WireframeRenderer().render(activityDetails) ?: return null
+
+        val file = File(folder, "${File(logFileName).nameWithoutExtension}.png")
+        return try {
+            file.writeBytes(png)
+            file
+        } catch (e: IOException) {
+            SdkLogger.error(TAG, e)
+            null
+        }
+    }
 
-        var didSave = false
-        currentSessionScreenTracesFolder?.let {
-            val file = File(it.absolutePath, filename)
+    /**
+     * @return The wireframe that was stored with the log, `null` if there's none.
+     */
+    fun wireframeOf(logFile: File): File? {
+        val folder = screenshotsFolder ?: return null
+        return File(folder, "${logFile.nameWithoutExtension}.png").takeIf { it.isFile }
+    }
 
-            try {
-                val logFileStream = FileOutputStream(file)
-                logFileStream.write(activityDetails.toJson().toString().toByteArray())
-                didSave = true
-            } catch (e: FileNotFoundException) {
-                SdkLogger.error(TAG, e)
-            } catch (e: IOException) {
-                SdkLogger.error(TAG, e)
-            }
+    /**
+     * Writes the snapshots in a single file of the current session.
+     */
+    fun persistBreadcrumbs(snapshots: List<ActivityDetails>): Boolean {
+        if (snapshots.isEmpty()) return true
+
+        val tracesFolder = currentSessionScreenTracesFolder ?: return false
+        var file = File(tracesFolder, "${Utils.now()}.log")
+        while (file.exists()) {
+            file = File(tracesFolder, "${file.nameWithoutExtension.toLong() + 1}.log")
         }
 
-        return didSave
+        return try {
+            val jsonArray = JSONArray(snapshots.map { it.toJson() })
+            FileOutputStream(file).use {
+                it.write(jsonArray.toString().toByteArray())
+            }
+            true
+        } catch (e: IOException) {
+            SdkLogger.error(TAG, e)
+            false
+        }
     }
 
     companion object {
         val FILES_PATH: String = ".CrashOps${File.separator}files"
         internal val TAG: String = Repository::class.java.simpleName
+        private val SESSION_ID_PATTERN = Regex("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}")
         @JvmStatic
         val instance: Repository = Repository()
 
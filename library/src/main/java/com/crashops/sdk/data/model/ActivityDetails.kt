@@ -1,59 +1,49 @@
 package com.crashops.sdk.data.model
 
 import android.app.Activity
-import android.view.View
+import androidx.annotation.MainThread
 import com.crashops.sdk.COHostApplication
-import com.crashops.sdk.data.Repository
-import com.crashops.sdk.data.toJson
 import com.crashops.sdk.util.SdkLogger
 import com.crashops.sdk.util.Utils
 import org.json.JSONArray
 import org.json.JSONObject
 
-class ActivityDetails: View.OnLayoutChangeListener {
+class ActivityDetails {
     class Keys {
         companion object {
             const val NAME = "name"
             const val PACKAGE = "package"
             const val TIMESTAMP = "timestamp"
             const val VIEWS = "views"
+            const val PARTIAL = "partial"
         }
     }
 
     companion object {
-        fun from(jsonString: String): ActivityDetails? {
-            return jsonString.toJson()?.let {
-                val details = ActivityDetails(it)
-                return if (details.timestamp > 0) {
-                    details
-                } else {
-                    null
-                }
-            }
-        }
-
         private val TAG: String = ActivityDetails::class.java.simpleName
     }
 
-    constructor(json: JSONObject) {
-        name = json.optString(Keys.NAME)
-        packageName = json.optString(Keys.PACKAGE)
-        timestamp = json.optLong(Keys.TIMESTAMP)
-        // These are only the initial details, we should refresh it when sizes will be available
-        json.optJSONObject(Keys.VIEWS)?.let {
-            ViewDetails.from(it)?.let { parsed ->
-                viewDetails = parsed
-            }
-        }
+    /**
+     * E.g. a stored snapshot, see [TracesReader].
+     */
+    internal constructor(name: String, packageName: String, timestamp: Long, viewDetails: ViewDetails?, isPartial: Boolean) {
+        this.name = name
+        this.packageName = packageName
+        this.timestamp = timestamp
+        this.views = viewDetails
+        this.isPartial = isPartial
     }
 
-    constructor(activity: Activity) {
-        activity.window.decorView.addOnLayoutChangeListener(this)
+    /**
+     * @param previous The Activity's views from an earlier snapshot, its unchanged nodes are reused.
+     */
+    @MainThread
+    constructor(activity: Activity, previous: ViewDetails? = null) {
         name = activity.localClassName
         packageName = activity.packageName
         timestamp = Utils.getCurrentTimestamp()
         // These are only the initial details, we should refresh it when sizes will be available
-        viewDetails = ViewDetails.extract(activity.window.decorView)
+        views = ViewDetails.extract(activity.window.decorView, previous)
 
         if (COHostApplication.shared().isHostAppDebuggable) {
             val stringBuilder = java.lang.StringBuilder()
@@ -62,6 +52,18 @@ class ActivityDetails: View.OnLayoutChangeListener {
         }
     }
 
+    /**
+     * A snapshot of the views that were already extracted, e.g. [ViewTreeExtraction.finishNow].
+     */
+    @MainThread
+    constructor(activity: Activity, viewDetails: ViewDetails, isPartial: Boolean) {
+        name = activity.localClassName
+        packageName = activity.packageName
+        timestamp = Utils.getCurrentTimestamp()
+        this.views = viewDetails
+        this.isPartial = isPartial
+    }
+
     var name: String = ""
         private set
 
@@ -71,34 +73,50 @@ class ActivityDetails: View.OnLayoutChangeListener {
     var timestamp: Long = 0
         private set
 
-    var viewDetails: ViewDetails? = null
+    /**
+     * Replaced on the main thread and serialized on the background thread.
+     * A compacted snapshot's views are inflated on every call, see [compact].
+     */
+    val viewDetails: ViewDetails?
+        get() = views ?: compactViews?.toViewDetails()
+
+    @Volatile
+    private var views: ViewDetails? = null
+
+    @Volatile
+    private var compactViews: CompactViewTree? = null
+
+    /**
+     * `true` if the views weren't all copied (see [com.crashops.sdk.configuration.Configurations.screenTracesMaxNodes]) or were copied over a few frames.
+     */
+    @Volatile
+    var isPartial: Boolean = false
         private set
 
-    override fun onLayoutChange(v: View?, left: Int, top: Int, right: Int, bottom: Int, oldLeft: Int, oldTop: Int, oldRight: Int, oldBottom: Int) {
-        v?.let { changedView ->
-            // Copying the tree to simpler classes must occur on the Main Thread to avoid changes while running.
-            val updatedViewDetails = ViewDetails.extract(changedView)
-            COHostApplication.shared().runInBackgroundThread {
-                // This comparision won't run the Main Thread to avoid janky UI
-                // as it compares both trees.
-                if (viewDetails == updatedViewDetails) {
-                    // No more changes - stop observing changes
-                    // (even animations will change layout so it's not recommended to endlessly observe these changes)
-                    COHostApplication.shared().runOnUiThread {
-                        changedView.removeOnLayoutChangeListener(this)
-                    }
-                } else {
-                    viewDetails = updatedViewDetails
-                    Repository.instance.persistBreadcrumb(this)
-                }
-            }
-        } ?: run {
-            v?.removeOnLayoutChangeListener(this)
-        }
+    /**
+     * Replaces the views with a newer extraction of the same visit, see [com.crashops.sdk.logic.ActivityLayoutObserver].
+     */
+    @MainThread
+    internal fun update(viewDetails: ViewDetails, isPartial: Boolean) {
+        this.views = viewDetails
+        compactViews = null
+        this.isPartial = isPartial
     }
 
-    fun stopObserving(activity: Activity) {
-        activity.window.decorView.removeOnLayoutChangeListener(this)
+    /**
+     * Keeps the views as a [CompactViewTree] (a few arrays instead of objects per node), for a snapshot that won't be
+     * updated anymore but stays in the tracer's ring.
+     */
+    internal fun compact() {
+        val views = views ?: return
+        // Readers check [views] first, the compact tree must be there once it's gone
+        compactViews = views.toCompactTree()
+        this.views = null
+    }
+
+    internal fun viewsToJson(): JSONObject? {
+        views?.let { return it.toJson() }
+        return compactViews?.toJson()
     }
 }
 
@@ -140,15 +158,19 @@ fun ActivityDetails.toJson(): JSONObject {
             .put(ActivityDetails.Keys.PACKAGE, packageName)
             .put(ActivityDetails.Keys.TIMESTAMP, timestamp)
 
-    viewDetails?.toJson()?.let {
+    viewsToJson()?.let {
         json.put(ActivityDetails.Keys.VIEWS, it)
     }
 
+    if (isPartial) {
+        json.put(ActivityDetails.Keys.PARTIAL, true)
+    }
+
     return json
 }
 
 
-private fun ViewDetails.toJson(): JSONObject {
+internal fun ViewDetails.toJson(): JSONObject {
     val viewDetailsJson = JSONObject()
             .put("className", className)
             .put("depth", depth)
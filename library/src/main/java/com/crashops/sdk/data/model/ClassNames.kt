@@ -0,0 +1,91 @@
+package com.crashops.sdk.data.model
+
+import java.util.*
+
+/**
+ * Interned simple names of the captured views' classes.
+ *
+ * A screen repeats the same few dozen classes thousands of times in a trace session, and `Class.getSimpleName`
+ * allocates a new string on every call. Here every name is computed once and shared by all the snapshots,
+ * whether extracted from views or read from stored traces, and gets a small id (see [CompactViewTree]).
+ *
+ * The ids only live as long as the process, stored and uploaded traces keep the names.
+ *
+ * Lookups don't lock: the tables are replaced (copied with the new name) rather than modified, which happens only
+ * the first time a class is seen.
+ */
+class ClassNames private constructor() {
+    companion object {
+        @JvmStatic
+        val instance: ClassNames = ClassNames()
+
+        /**
+         * Names beyond this (which no real app has) are returned without being interned.
+         */
+        private const val MAX_NAMES_COUNT = 4096
+
+        const val NO_ID = -1
+    }
+
+    @Volatile
+    private var namesByClass: IdentityHashMap<Class<*>, String> = IdentityHashMap()
+
+    @Volatile
+    private var idsByName: HashMap<String, Int> = hashMapOf()
+
+    @Volatile
+    private var names: Array<String> = arrayOf()
+
+    fun nameOf(viewClass: Class<*>): String {
+        namesByClass[viewClass]?.let {
+            return it
+        }
+
+        return synchronized(this) {
+            namesByClass[viewClass] ?: run {
+                val name = intern(viewClass.simpleName)
+                val updatedNamesByClass = IdentityHashMap(namesByClass)
+                updatedNamesByClass[viewClass] = name
+                namesByClass = updatedNamesByClass
+                name
+            }
+        }
+    }
+
+    /**
+     * @return The interned instance of [name].
+     */
+    fun intern(name: String): String {
+        val id = idOf(name)
+        return if (id == NO_ID) name else names[id]
+    }
+
+    /**
+     * @return [NO_ID] if there are too many names already.
+     */
+    fun idOf(name: String): Int {
+        idsByName[name]?.let {
+            return it
+        }
+
+        synchronized(this) {
+            idsByName[name]?.let {
+                return it
+            }
+
+            if (names.size >= MAX_NAMES_COUNT) return NO_ID
+
+            // The name is published before its id, a reader that got the id will find it
+            val id = names.size
+            names = names + name
+            val updatedIdsByName = HashMap(idsByName)
+            updatedIdsByName[name] = id
+            idsByName = updatedIdsByName
+            return id
+        }
+    }
+
+    fun nameOf(id: Int): String? {
+        return names.getOrNull(id)
+    }
+}
@@ -0,0 +1,199 @@
+package com.crashops.sdk.data.model
+
+import org.json.JSONArray
+import org.json.JSONObject
+import java.util.*
+
+/**
+ * A captured view tree in a handful of arrays instead of an object graph (four objects and a list per [ViewDetails] node),
+ * so retained snapshots cost little memory and almost no garbage collection work.
+ *
+ * Nodes are stored in pre-order, the root is node 0 and a node's children follow it. Class names are stored as
+ * their [ClassNames] ids.
+ *
+ * [ActivityDetails] keeps its views this way once the snapshot won't be updated anymore, see [ActivityDetails.compact].
+ */
+class CompactViewTree private constructor(
+        /**
+         * The number of nodes.
+         */
+        val size: Int,
+        private val classIds: IntArray,
+        /**
+         * The names that didn't get an id (see [ClassNames.NO_ID]), by node, `null` if all did.
+         */
+        private val uninternedClassNames: Array<String?>?,
+        private val parentIndices: IntArray,
+        private val nextSiblingIndices: IntArray,
+        private val depths: IntArray,
+        private val xs: FloatArray,
+        private val ys: FloatArray,
+        private val widths: IntArray,
+        private val heights: IntArray
+) {
+    companion object {
+        const val NO_NODE = -1
+
+        fun of(root: ViewDetails): CompactViewTree {
+            val nodes: ArrayList<ViewDetails> = arrayListOf()
+            val parents: ArrayList<Int> = arrayListOf()
+
+            // Pre-order, without recursion
+            val pending: ArrayDeque<Pair<ViewDetails, Int>> = ArrayDeque()
+            pending.push(root to NO_NODE)
+            while (pending.isNotEmpty()) {
+                val (node, parentIndex) = pending.pop()
+                val index = nodes.size
+                nodes.add(node)
+                parents.add(parentIndex)
+                for (i in node.children.indices.reversed()) {
+                    pending.push(node.children[i] to index)
+                }
+            }
+
+            val size = nodes.size
+            val classIds = IntArray(size)
+            var uninternedClassNames: Array<String?>? = null
+            val parentIndices = IntArray(size)
+            val nextSiblingIndices = IntArray(size) { NO_NODE }
+            val depths = IntArray(size)
+            val xs = FloatArray(size)
+            val ys = FloatArray(size)
+            val widths = IntArray(size)
+            val heights = IntArray(size)
+
+            // The last child that was seen, per parent
+            val lastChildIndices = IntArray(size) { NO_NODE }
+            for (i in 0 until size) {
+                val node = nodes[i]
+                classIds[i] = ClassNames.instance.idOf(node.className)
+                if (classIds[i] == ClassNames.NO_ID) {
+                    if (uninternedClassNames == null) {
+                        uninternedClassNames = arrayOfNulls(size)
+                    }
+                    uninternedClassNames[i] = node.className
+                }
+
+                val parentIndex = parents[i]
+                parentIndices[i] = parentIndex
+                if (parentIndex != NO_NODE) {
+                    val previousSibling = lastChildIndices[parentIndex]
+                    if (previousSibling != NO_NODE) {
+                        nextSiblingIndices[previousSibling] = i
+                    }
+                    lastChildIndices[parentIndex] = i
+                }
+
+                depths[i] = node.depth
+                xs[i] = node.position.x
+                ys[i] = node.position.y
+                widths[i] = node.dimensions.width
+                heights[i] = node.dimensions.height
+            }
+
+            return CompactViewTree(size, classIds, uninternedClassNames, parentIndices, nextSiblingIndices,
+                    depths, xs, ys, widths, heights)
+        }
+    }
+
+    fun className(index: Int): String {
+        return uninternedClassNames?.get(index) ?: ClassNames.instance.nameOf(classIds[index]) ?: ""
+    }
+
+    /**
+     * @return [ClassNames.NO_ID] if the name wasn't interned.
+     */
+    fun classId(index: Int): Int = classIds[index]
+
+    /**
+     * @return [NO_NODE] for the root.
+     */
+    fun parentIndex(index: Int): Int = parentIndices[index]
+
+    fun depth(index: Int): Int = depths[index]
+
+    fun x(index: Int): Float = xs[index]
+
+    fun y(index: Int): Float = ys[index]
+
+    fun width(index: Int): Int = widths[index]
+
+    fun height(index: Int): Int = heights[index]
+
+    /**
+     * @return [NO_NODE] if the node is a leaf.
+     */
+    fun firstChildIndex(index: Int): Int {
+        val next = index + 1
+        return if (next < size && parentIndices[next] == index) next else NO_NODE
+    }
+
+    /**
+     * @return [NO_NODE] if the node is its parent's last child.
+     */
+    fun nextSiblingIndex(index: Int): Int = nextSiblingIndices[index]
+
+    fun isLeaf(index: Int): Boolean = firstChildIndex(index) == NO_NODE
+
+    /**
+     * Visits the nodes in pre-order without allocating anything.
+     */
+    inline fun forEachNode(action: (index: Int) -> Unit) {
+        for (i in 0 until size) {
+            action(i)
+        }
+    }
+
+    /**
+     * The same JSON as [ViewDetails.toJson] of the tree's root.
+     */
+    fun toJson(): JSONObject {
+        return toJson(0)
+    }
+
+    private fun toJson(index: Int): JSONObject {
+        val json = JSONObject()
+                .put(ViewDetails.Keys.CLASS_NAME, className(index))
+                .put(ViewDetails.Keys.DEPTH, depths[index])
+                .put(ViewDetails.Keys.POSITION, JSONObject()
+                        .put("x", xs[index].toInt())
+                        .put("y", ys[index].toInt()))
+                .put(ViewDetails.Keys.DIMENSIONS, JSONObject()
+                        .put("width", widths[index])
+                        .put("height", heights[index]))
+
+        var child = firstChildIndex(index)
+        if (child != NO_NODE) {
+            val children = JSONArray()
+            while (child != NO_NODE) {
+                children.put(toJson(child))
+                child = nextSiblingIndices[child]
+            }
+            json.put(ViewDetails.Keys.CHILDREN, children)
+        }
+
+        return json
+    }
+
+    /**
+     * Inflates the tree back to objects, e.g. for [TraceDeltaEncoder].
+     */
+    fun toViewDetails(): ViewDetails {
+        return toViewDetails(0)
+    }
+
+    private fun toViewDetails(index: Int): ViewDetails {
+        val children: ArrayList<ViewDetails> = arrayListOf()
+        var child = firstChildIndex(index)
+        while (child != NO_NODE) {
+            children.add(toViewDetails(child))
+            child = nextSiblingIndices[child]
+        }
+
+        return ViewDetails(className(index), Position(xs[index], ys[index]), Size(widths[index], heights[index]), children, depths[index])
+    }
+}
+
+fun ViewDetails.toCompactTree(): CompactViewTree {
+    return CompactViewTree.of(this)
+}
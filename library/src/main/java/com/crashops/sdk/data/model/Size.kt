@@ -16,7 +16,7 @@ class Size(val width: Int, val height: Int) {
     }
 
     override fun hashCode(): Int {
-        return toString().hashCode()
+        return 31 * width + height
     }
 }
 
@@ -34,7 +34,8 @@ class Position(val x: Float, val y: Float) {
     }
 
     override fun hashCode(): Int {
-        return toString().hashCode()
+        // "+ 0f" turns -0f into 0f, they're equal positions
+        return 31 * java.lang.Float.floatToIntBits(x + 0f) + java.lang.Float.floatToIntBits(y + 0f)
     }
 }
 
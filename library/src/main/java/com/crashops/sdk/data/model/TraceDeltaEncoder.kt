@@ -0,0 +1,133 @@
+package com.crashops.sdk.data.model
+
+import org.json.JSONArray
+import org.json.JSONObject
+
+/**
+ * Encodes a session's screen traces as keyframes followed by structural deltas.
+ *
+ * A snapshot of the same Activity as the entry before it is uploaded as the list of operations that turn
+ * that entry's tree into this one. Nodes are addressed by their path of child indices from the root
+ * (e.g. "0/2/1", the root is ""), and the operations should be applied in their order:
+ *  - "add": a new subtree (`node`) was inserted at `path`.
+ *  - "remove": the subtree at `path` is gone (removals come from the highest index down).
+ *  - "replace": the node at `path` became a view of another class, `node` is the new subtree.
+ *  - "move": the node at `path` kept its class but got a new `position` and/or `dimensions`.
+ *
+ * Anything else (a new Activity, or a delta that's larger than half of the tree) is uploaded as a full keyframe.
+ */
+class TraceDeltaEncoder {
+    class Keys {
+        companion object {
+            const val BASE = "base"
+            const val OPERATIONS = "ops"
+            const val OPERATION = "op"
+            const val PATH = "path"
+            const val NODE = "node"
+        }
+    }
+
+    companion object {
+        /**
+         * Tells the server how the `screenTraces` array is encoded.
+         */
+        const val ENCODING = "delta"
+
+        private const val ADD = "add"
+        private const val REMOVE = "remove"
+        private const val REPLACE = "replace"
+        private const val MOVE = "move"
+
+        fun encode(traces: List<ActivityDetails>): JSONArray {
+            val encoded = JSONArray()
+            var previous: ActivityDetails? = null
+            traces.sortedBy { it.timestamp }.forEachIndexed { index, activityDetails ->
+                val base = previous
+                previous = activityDetails
+
+                val baseViews = base?.viewDetails
+                val views = activityDetails.viewDetails
+                if (base == null || baseViews == null || views == null ||
+                        base.name != activityDetails.name || base.packageName != activityDetails.packageName) {
+                    encoded.put(activityDetails.toJson())
+                    return@forEachIndexed
+                }
+
+                val operations = JSONArray()
+                diff(baseViews, views, "", operations)
+
+                if (operations.length() > views.nodesCount() / 2) {
+                    // Not worth it
+                    encoded.put(activityDetails.toJson())
+                } else {
+                    val delta = JSONObject()
+                            .put(ActivityDetails.Keys.NAME, activityDetails.name)
+                            .put(ActivityDetails.Keys.PACKAGE, activityDetails.packageName)
+                            .put(ActivityDetails.Keys.TIMESTAMP, activityDetails.timestamp)
+                            .put(Keys.BASE, index - 1)
+                            .put(Keys.OPERATIONS, operations)
+                    if (activityDetails.isPartial) {
+                        delta.put(ActivityDetails.Keys.PARTIAL, true)
+                    }
+                    encoded.put(delta)
+                }
+            }
+
+            return encoded
+        }
+
+        private fun diff(old: ViewDetails, new: ViewDetails, path: String, operations: JSONArray) {
+            // Unchanged subtrees are skipped without visiting them
+            if (old.hasSameStructure(new)) return
+
+            if (old.className != new.className) {
+                operations.put(operation(REPLACE, path).put(Keys.NODE, new.toJson()))
+                return
+            }
+
+            if (old.position != new.position || old.dimensions != new.dimensions) {
+                operations.put(operation(MOVE, path)
+                        .put(ViewDetails.Keys.POSITION, new.position.toJson())
+                        .put(ViewDetails.Keys.DIMENSIONS, new.dimensions.toJson()))
+            }
+
+            val oldChildren = old.children
+            val newChildren = new.children
+            val commonCount = Math.min(oldChildren.size, newChildren.size)
+            for (i in 0 until commonCount) {
+                diff(oldChildren[i], newChildren[i], childPath(path, i), operations)
+            }
+
+            for (i in commonCount until newChildren.size) {
+                operations.put(operation(ADD, childPath(path, i)).put(Keys.NODE, newChildren[i].toJson()))
+            }
+
+            for (i in oldChildren.size - 1 downTo commonCount) {
+                operations.put(operation(REMOVE, childPath(path, i)))
+            }
+        }
+
+        private fun operation(type: String, path: String): JSONObject {
+            return JSONObject()
+                    .put(Keys.OPERATION, type)
+                    .put(Keys.PATH, path)
+        }
+
+        private fun childPath(parentPath: String, index: Int): String {
+            return if (parentPath.isEmpty()) {
+                index.toString()
+            } else {
+                "$parentPath/$index"
+            }
+        }
+
+        private fun ViewDetails.nodesCount(): Int {
+            var count = 1
+            children.forEach {
+                count += it.nodesCount()
+            }
+
+            return count
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.crashops.sdk.data.model
+
+import com.crashops.sdk.util.SdkLogger
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import java.io.*
+
+/**
+ * Reads stored screen traces with a pull parser, straight into [ActivityDetails] and [ViewDetails].
+ *
+ * Unlike parsing with org.json, neither the file's text nor an intermediate `JSONObject` tree is held in memory.
+ * A traces file holds a single snapshot, or an array of snapshots that were flushed together.
+ * Gson's reader is used since it works the same on the device and on a desktop JVM.
+ */
+class TracesReader private constructor(private val reader: JsonReader) {
+    companion object {
+        private val TAG: String = TracesReader::class.java.simpleName
+
+        /**
+         * @param onError Logs by default, the SDK's logger isn't available on a desktop JVM.
+         */
+        @JvmOverloads
+        fun read(file: File, onError: (Exception) -> Unit = { SdkLogger.error(TAG, it) }): List<ActivityDetails> {
+            return try {
+                read(InputStreamReader(BufferedInputStream(FileInputStream(file)), Charsets.UTF_8), onError)
+            } catch (e: IOException) {
+                onError(e)
+                listOf()
+            }
+        }
+
+        /**
+         * Closes the reader.
+         * @return The valid snapshots, up to the first malformed part.
+         */
+        @JvmOverloads
+        fun read(reader: Reader, onError: (Exception) -> Unit = { SdkLogger.error(TAG, it) }): List<ActivityDetails> {
+            val snapshots: ArrayList<ActivityDetails> = arrayListOf()
+            try {
+                JsonReader(reader).use {
+                    TracesReader(it).readSnapshots(snapshots)
+                }
+            } catch (e: IOException) {
+                onError(e)
+            } catch (e: IllegalStateException) {
+                // An unexpected token
+                onError(e)
+            } catch (e: NumberFormatException) {
+                onError(e)
+            }
+
+            return snapshots
+        }
+    }
+
+    private fun readSnapshots(snapshots: MutableList<ActivityDetails>) {
+        when (reader.peek()) {
+            JsonToken.BEGIN_ARRAY -> {
+                reader.beginArray()
+                while (reader.hasNext()) {
+                    readSnapshot()?.let { snapshots.add(it) }
+                }
+                reader.endArray()
+            }
+            JsonToken.BEGIN_OBJECT -> {
+                readSnapshot()?.let { snapshots.add(it) }
+            }
+            else -> reader.skipValue()
+        }
+    }
+
+    /**
+     * @return `null` if it isn't a valid snapshot (it has no timestamp).
+     */
+    private fun readSnapshot(): ActivityDetails? {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue()
+            return null
+        }
+
+        var name = ""
+        var packageName = ""
+        var timestamp = 0L
+        var isPartial = false
+        var viewDetails: ViewDetails? = null
+
+        reader.beginObject()
+        while (reader.hasNext()) {
+            val key = reader.nextName()
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue()
+                continue
+            }
+
+            when (key) {
+                ActivityDetails.Keys.NAME -> name = reader.nextString()
+                ActivityDetails.Keys.PACKAGE -> packageName = reader.nextString()
+                ActivityDetails.Keys.TIMESTAMP -> timestamp = reader.nextLong()
+                ActivityDetails.Keys.PARTIAL -> isPartial = reader.nextBoolean()
+                ActivityDetails.Keys.VIEWS -> viewDetails = readView()
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+
+        if (timestamp <= 0) return null
+
+        return ActivityDetails(name, packageName, timestamp, viewDetails, isPartial)
+    }
+
+    /**
+     * @return `null` if it isn't a valid view (it has no class name).
+     */
+    private fun readView(): ViewDetails? {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue()
+            return null
+        }
+
+        var className = ""
+        var position = Position(0f, 0f)
+        var dimensions = Size(0, 0)
+        var depth = 0
+        val children: ArrayList<ViewDetails> = arrayListOf()
+
+        reader.beginObject()
+        while (reader.hasNext()) {
+            val key = reader.nextName()
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue()
+                continue
+            }
+
+            when (key) {
+                ViewDetails.Keys.CLASS_NAME -> className = ClassNames.instance.intern(reader.nextString())
+                ViewDetails.Keys.DEPTH -> depth = reader.nextInt()
+                ViewDetails.Keys.POSITION -> position = readPosition()
+                ViewDetails.Keys.DIMENSIONS -> dimensions = readSize()
+                ViewDetails.Keys.CHILDREN -> {
+                    reader.beginArray()
+                    while (reader.hasNext()) {
+                        readView()?.let { children.add(it) }
+                    }
+                    reader.endArray()
+                }
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+
+        if (className.isEmpty()) return null
+
+        return ViewDetails(className, position, dimensions, children, depth)
+    }
+
+    private fun readPosition(): Position {
+        var x = 0f
+        var y = 0f
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "x" -> x = reader.nextDouble().toFloat()
+                "y" -> y = reader.nextDouble().toFloat()
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+
+        return Position(x, y)
+    }
+
+    private fun readSize(): Size {
+        var width = 0
+        var height = 0
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "width" -> width = reader.nextInt()
+                "height" -> height = reader.nextInt()
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+
+        return Size(width, height)
+    }
+}
@@ -1,10 +1,8 @@
 package com.crashops.sdk.data.model
 
 import android.view.View
-import android.view.ViewGroup
 import androidx.annotation.MainThread
-import org.json.JSONArray
-import org.json.JSONObject
+import com.crashops.sdk.configuration.Configurations
 
 class ViewDetails {
     class Keys {
@@ -23,16 +21,52 @@ class ViewDetails {
          */
         @MainThread
         fun extract(view: View): ViewDetails {
-            return ViewDetails(view, 0)
+            return extract(view, null)
         }
 
-        fun from(jsonObject: JSONObject): ViewDetails? {
-            val details = ViewDetails(jsonObject)
-            return if (details.className.isNotEmpty()) {
-                details
-            } else {
-                null
+        /**
+         * Extracts the tree again while reusing every node of [previous] whose view kept its class, bounds and children.
+         * Only the changed nodes (and their ancestors, which must point at the new children) are allocated,
+         * so an unchanged tree is returned as the very same instance and comparing snapshots is an identity check.
+         *
+         * The whole tree is copied at once (within the configured bounds), see [ViewTreeExtraction] for a paced extraction.
+         *
+         * This must run on the main thread.
+         *
+         * @param changedNodes Collects the nodes that were added or whose own class, position or dimensions changed.
+         */
+        @MainThread
+        fun extract(view: View, previous: ViewDetails?, changedNodes: MutableList<ViewDetails>? = null): ViewDetails {
+            val extraction = ViewTreeExtraction(view, previous,
+                    Configurations.screenTracesMaxNodes(), Configurations.screenTracesMaxDepth(), changedNodes)
+            extraction.resume(Long.MAX_VALUE)
+            return extraction.result!!
+        }
+
+        private const val HASH_MULTIPLIER = 0x100000001b3L
+
+        /**
+         * Mixes the node's own fields with its children's hashes (which were computed when they were created),
+         * so the root's hash covers the whole tree, like a Merkle tree. The depth isn't included, as in [equals].
+         */
+        private fun structuralHashOf(className: String, position: Position, dimensions: Size, children: List<ViewDetails>): Long {
+            var hash = className.hashCode().toLong()
+            // "+ 0f" turns -0f into 0f, they're equal positions
+            hash = hash * HASH_MULTIPLIER + java.lang.Float.floatToIntBits(position.x + 0f)
+            hash = hash * HASH_MULTIPLIER + java.lang.Float.floatToIntBits(position.y + 0f)
+            hash = hash * HASH_MULTIPLIER + dimensions.width
+            hash = hash * HASH_MULTIPLIER + dimensions.height
+            hash = hash * HASH_MULTIPLIER + children.size
+            for (child in children) {
+                hash = hash * HASH_MULTIPLIER + child.structuralHash
             }
+
+            // MurmurHash3's finalizer, spreads the bits so similar trees don't get similar hashes
+            hash = hash xor (hash ushr 33)
+            hash *= -0xae502812aa7333L
+            hash = hash xor (hash ushr 33)
+            hash *= -0x3b314601e57a13adL
+            return hash xor (hash ushr 33)
         }
     }
 
@@ -45,36 +79,19 @@ class ViewDetails {
         private set
     val depth: Int
 
-    constructor(v: View, depth: Int) {
-        className = v.javaClass.simpleName
-        position = Position(v.x, v.y)
-        dimensions = Size(v.width, v.height)
-        children = v.mapChildren {
-            ViewDetails(it, depth + 1)
-        }
+    /**
+     * Covers the entire subtree, two nodes with different hashes are different
+     * (and equal hashes mean equal subtrees, apart from a 64-bit collision).
+     */
+    val structuralHash: Long
+
+    internal constructor(className: String, position: Position, dimensions: Size, children: List<ViewDetails>, depth: Int) {
+        this.className = className
+        this.position = position
+        this.dimensions = dimensions
+        this.children = children
         this.depth = depth
-    }
-
-    private constructor(json: JSONObject) {
-        className = json.optString(Keys.CLASS_NAME)
-        json.optJSONObject(Keys.POSITION)?.let {
-            position = Position(it.optDouble("x").toFloat(), it.optDouble("y").toFloat())
-        }
-        json.optJSONObject(Keys.DIMENSIONS)?.let {
-            dimensions = Size(it.optInt("width"), it.optInt("height"))
-        }
-        // These are only the initial details, we should refresh it when sizes will be available
-        json.optJSONArray(Keys.CHILDREN)?.let {
-            val updatedChildren: ArrayList<ViewDetails> = arrayListOf()
-            for (jsonObject in it.iterator()) {
-                ViewDetails.from(jsonObject)?.let { parsed ->
-                    updatedChildren.add(parsed)
-                }
-            }
-
-            children = updatedChildren
-        }
-        depth = json.optInt(Keys.DEPTH)
+        structuralHash = structuralHashOf(className, position, dimensions, children)
     }
 
     val isLeaf: Boolean
@@ -84,7 +101,9 @@ class ViewDetails {
     // may change so it might be confusing as it's the same view and the children
     // are changes after every user's scroll.
     override fun equals(other: Any?): Boolean {
+        if (this === other) return true
         if (other !is ViewDetails) return false
+        if (structuralHash != other.structuralHash) return false
         if (className != other.className ||
                 position != other.position ||
                 dimensions != other.dimensions) return false
@@ -99,40 +118,18 @@ class ViewDetails {
         return allChildrenAreEqual
     }
 
+    /**
+     * Constant time, unlike [equals] which confirms the entire trees are equal.
+     */
+    fun hasSameStructure(other: ViewDetails): Boolean {
+        return structuralHash == other.structuralHash
+    }
+
     override fun hashCode(): Int {
-        return toString().hashCode()
+        return (structuralHash xor (structuralHash ushr 32)).toInt()
     }
 
     override fun toString(): String {
         return "{className: '$className', size: (${dimensions.width} x ${dimensions.height}), position: (${position.x} x ${position.y})}"
     }
 }
-
-private fun JSONArray.iterator(): JSONArrayIterator {
-    return JSONArrayIterator(this)
-}
-
-class JSONArrayIterator(private val jsonArray: JSONArray) : Iterator<JSONObject> {
-    var currentIndex = 0
-    override fun hasNext(): Boolean {
-        return currentIndex < jsonArray.length()
-    }
-
-    override fun next(): JSONObject {
-        val currentObject = jsonArray.getJSONObject(currentIndex)
-        currentIndex += 1
-        return currentObject
-    }
-}
-
-private fun <R> View.mapChildren(transform: (View) -> R): List<R> {
-    val children = arrayListOf<R>()
-    if (this is ViewGroup) {
-        val childCount = (this as? ViewGroup)?.childCount ?: return emptyList()
-        for (i in 0 until childCount) {
-            children.add(transform(getChildAt(i)))
-        }
-    }
-
-    return children
-}
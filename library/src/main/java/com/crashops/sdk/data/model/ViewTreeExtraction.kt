@@ -0,0 +1,196 @@
+package com.crashops.sdk.data.model
+
+import android.view.View
+import android.view.ViewGroup
+import androidx.annotation.MainThread
+import java.util.*
+
+/**
+ * Copies a view tree into [ViewDetails] without recursion, a step at a time.
+ *
+ * The traversal is bounded by [maxNodes] and [maxDepth] (the views beyond them are left out), and [resume] returns
+ * once its deadline passes, so a huge layout is copied over several frames instead of stalling one.
+ * Either way the result is marked as [isPartial].
+ *
+ * Nodes of [previous] whose view kept its class, bounds and children are reused as they are, so an unchanged tree
+ * is extracted as the very same instance.
+ *
+ * Every view (within the bounds) is still visited: a layout listener is only told that its own view was laid out,
+ * not which descendants moved, and a listener on every view would cost more than this visit. Visiting an unchanged
+ * view only reads its bounds and child count, it gets no new [ViewDetails] (only a short-lived traversal frame).
+ */
+class ViewTreeExtraction(
+        root: View,
+        private val previous: ViewDetails?,
+        private val maxNodes: Int,
+        private val maxDepth: Int,
+        /**
+         * Collects the nodes that were added or whose own class, position or dimensions changed.
+         */
+        val changedNodes: MutableList<ViewDetails>? = null
+) {
+    companion object {
+        /**
+         * The clock is checked once per this many nodes.
+         */
+        private const val NODES_PER_DEADLINE_CHECK = 8
+    }
+
+    /**
+     * A view that's being visited, it's done once all of its children (within the bounds) are.
+     */
+    private class Frame(val view: View, val depth: Int, val previous: ViewDetails?) {
+        val className: String = ClassNames.instance.nameOf(view.javaClass)
+        val x: Float = view.x
+        val y: Float = view.y
+        val width: Int = view.width
+        val height: Int = view.height
+        val childCount: Int = (view as? ViewGroup)?.childCount ?: 0
+
+        /**
+         * Lowered when the traversal's bounds are reached.
+         */
+        var extractedChildCount: Int = childCount
+        var nextChildIndex = 0
+
+        /**
+         * Allocated only once a child turns out to be different from the previous one.
+         */
+        var children: ArrayList<ViewDetails>? = null
+
+        fun onChildExtracted(child: ViewDetails) {
+            val previousChildren = previous?.children
+            if (children == null && child !== previousChildren?.getOrNull(nextChildIndex - 1)) {
+                children = ArrayList(childCount)
+                previousChildren?.let {
+                    children!!.addAll(it.subList(0, Math.min(nextChildIndex - 1, it.size)))
+                }
+            }
+            children?.add(child)
+        }
+    }
+
+    private val frames: ArrayDeque<Frame> = ArrayDeque()
+    private var nodesCount = 0
+
+    var result: ViewDetails? = null
+        private set
+
+    /**
+     * `true` if some views were left out or if the tree was copied over more than one [resume].
+     */
+    var isPartial: Boolean = false
+        private set
+
+    val isDone: Boolean
+        get() = result != null
+
+    private var resumesCount = 0
+
+    init {
+        push(root, 0, previous)
+    }
+
+    /**
+     * This must run on the main thread.
+     *
+     * @param deadlineNanos Compared with [System.nanoTime], the traversal pauses once it passes.
+     * @return `true` if the extraction is done, otherwise it should be resumed later (e.g. on the next frame).
+     */
+    @MainThread
+    fun resume(deadlineNanos: Long): Boolean {
+        if (isDone) return true
+
+        resumesCount++
+        if (resumesCount > 1) {
+            isPartial = true
+        }
+
+        var stepsCount = 0
+        while (true) {
+            val frame = frames.peek() ?: return true
+
+            if (frame.nextChildIndex < frame.extractedChildCount) {
+                if (frame.depth + 1 > maxDepth || nodesCount >= maxNodes) {
+                    isPartial = true
+                    frame.extractedChildCount = frame.nextChildIndex
+                    continue
+                }
+
+                // The tree may have changed between frames
+                val child = (frame.view as ViewGroup).getChildAt(frame.nextChildIndex)
+                if (child == null) {
+                    isPartial = true
+                    frame.extractedChildCount = frame.nextChildIndex
+                    continue
+                }
+
+                val previousChild = frame.previous?.children?.getOrNull(frame.nextChildIndex)
+                frame.nextChildIndex++
+                push(child, frame.depth + 1, previousChild)
+            } else {
+                frames.pop()
+                val node = finish(frame)
+                val parent = frames.peek()
+                if (parent == null) {
+                    result = node
+                    return true
+                }
+
+                parent.onChildExtracted(node)
+            }
+
+            stepsCount++
+            if (stepsCount % NODES_PER_DEADLINE_CHECK == 0 && System.nanoTime() > deadlineNanos) {
+                return false
+            }
+        }
+    }
+
+    /**
+     * Ends the extraction with the views that were copied so far (it's marked as [isPartial] if any were left).
+     *
+     * This must run on the main thread.
+     */
+    @MainThread
+    fun finishNow(): ViewDetails {
+        result?.let { return it }
+
+        isPartial = true
+        // No more children are visited, the pending frames are only completed
+        frames.forEach { it.extractedChildCount = it.nextChildIndex }
+        resume(Long.MAX_VALUE)
+        return result!!
+    }
+
+    private fun push(view: View, depth: Int, previous: ViewDetails?) {
+        frames.push(Frame(view, depth, previous))
+        nodesCount++
+    }
+
+    private fun finish(frame: Frame): ViewDetails {
+        val previous = frame.previous
+        val previousChildren = previous?.children
+        val extractedCount = frame.extractedChildCount
+        val children: List<ViewDetails> = frame.children ?: when {
+            previousChildren != null && previousChildren.size == extractedCount -> previousChildren
+            previousChildren != null -> ArrayList(previousChildren.subList(0, Math.min(extractedCount, previousChildren.size)))
+            else -> arrayListOf()
+        }
+
+        val isSameNode = previous != null &&
+                previous.className == frame.className &&
+                previous.position.x == frame.x && previous.position.y == frame.y &&
+                previous.dimensions.width == frame.width && previous.dimensions.height == frame.height
+
+        if (isSameNode && children === previousChildren) return previous!!
+
+        return if (isSameNode) {
+            ViewDetails(frame.className, previous!!.position, previous.dimensions, children, frame.depth)
+        } else {
+            ViewDetails(frame.className, Position(frame.x, frame.y), Size(frame.width, frame.height), children, frame.depth).also {
+                changedNodes?.add(it)
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.crashops.sdk.logic
+
+import android.app.Activity
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import android.view.Choreographer
+import android.view.View
+import androidx.annotation.MainThread
+import com.crashops.sdk.COHostApplication
+import com.crashops.sdk.configuration.Configurations
+import com.crashops.sdk.data.model.ActivityDetails
+import com.crashops.sdk.data.model.ViewDetails
+import com.crashops.sdk.data.model.ViewTreeExtraction
+import com.crashops.sdk.util.SdkLogger
+import java.lang.ref.WeakReference
+
+/**
+ * The only layout listener of an Activity, from its first resume until it's destroyed.
+ *
+ * A burst of layout passes (an animation, a list being filled) becomes a single snapshot: the views are extracted
+ * once the layout has been still for [Configurations.screenTracesQuietPeriodMilliseconds], or at the latest
+ * [MAX_DELAY_MILLISECONDS] after the burst began. Every resume starts a new [ActivityDetails] (a new breadcrumb),
+ * the following snapshots of the same visit replace its views. The views are only extracted here, a few of them per
+ * frame (see [Configurations.screenTracesFrameBudgetNanoseconds]), never all at once.
+ *
+ * A snapshot keeps the whole tree, though only the changed nodes are new objects (the rest is shared with the previous
+ * snapshot). Only the changes leave the device: reports encode the snapshots of a visit as deltas of the one before
+ * (see [com.crashops.sdk.data.model.TraceDeltaEncoder], which skips the shared subtrees). The stored file keeps whole
+ * trees, a delta would be useless once its base leaves the ring or the process dies.
+ *
+ * Everything here runs on the main thread.
+ */
+class ActivityLayoutObserver(
+        activity: Activity,
+        /**
+         * Called with every new or updated snapshot.
+         */
+        private val onSnapshot: (ActivityDetails) -> Unit
+) : View.OnLayoutChangeListener {
+    companion object {
+        private val TAG: String = ActivityLayoutObserver::class.java.simpleName
+
+        /**
+         * An endless animation won't postpone the snapshot forever.
+         */
+        private const val MAX_DELAY_MILLISECONDS: Long = 2000
+    }
+
+    // Weak, the tracer's map is weak too
+    private val decorView: WeakReference<View> = WeakReference(activity.window.decorView)
+    private val mainThreadHandler = Handler(Looper.getMainLooper())
+
+    /**
+     * The current visit's snapshot.
+     */
+    var activityDetails: ActivityDetails? = null
+        private set
+
+    private var isObserving = false
+    private var isStopped = false
+    private var burstStartTime: Long = 0
+
+    private var extraction: ViewTreeExtraction? = null
+    private var isLayoutChangedDuringExtraction = false
+
+    private val snapshotRunnable = Runnable {
+        burstStartTime = 0
+        startExtraction()
+    }
+
+    private val extractionFrameCallback = Choreographer.FrameCallback {
+        continueExtraction()
+    }
+
+    @MainThread
+    fun onResumed(activity: Activity) {
+        if (isStopped) return
+
+        // Nothing is extracted here: the visit starts with the previous visit's views (or only the root),
+        // marked as partial, and the paced extraction below replaces them
+        val previousActivityDetails = this.activityDetails
+        val seed = previousActivityDetails?.viewDetails
+                ?: ViewTreeExtraction(activity.window.decorView, null, 1, 0).finishNow()
+        val activityDetails = ActivityDetails(activity, seed, true)
+        this.activityDetails = activityDetails
+        onSnapshot(activityDetails)
+        previousActivityDetails?.let { compact(it) }
+
+        if (!isObserving) {
+            isObserving = true
+            activity.window.decorView.addOnLayoutChangeListener(this)
+        }
+
+        // Resuming doesn't always lay the views out again
+        if (extraction != null) {
+            isLayoutChangedDuringExtraction = true
+        } else {
+            scheduleSnapshot()
+        }
+    }
+
+    override fun onLayoutChange(v: View?, left: Int, top: Int, right: Int, bottom: Int, oldLeft: Int, oldTop: Int, oldRight: Int, oldBottom: Int) {
+        if (isStopped) {
+            v?.removeOnLayoutChangeListener(this)
+            return
+        }
+
+        if (extraction != null) {
+            // It will be extracted again once the current extraction is done
+            isLayoutChangedDuringExtraction = true
+            return
+        }
+
+        scheduleSnapshot()
+    }
+
+    /**
+     * Restarts the quiet period (the trailing edge of the burst).
+     */
+    private fun scheduleSnapshot() {
+        val now = SystemClock.uptimeMillis()
+        if (burstStartTime == 0L) {
+            burstStartTime = now
+        }
+
+        val quietPeriod = Configurations.screenTracesQuietPeriodMilliseconds()
+        val delay = Math.max(0, Math.min(quietPeriod, burstStartTime + MAX_DELAY_MILLISECONDS - now))
+        mainThreadHandler.removeCallbacks(snapshotRunnable)
+        mainThreadHandler.postDelayed(snapshotRunnable, delay)
+    }
+
+    private fun startExtraction() {
+        val view = decorView.get() ?: return stop()
+        val activityDetails = activityDetails ?: return
+
+        // Copying the tree to simpler classes must occur on the Main Thread to avoid changes while running.
+        // Only the subtrees that changed since the previous snapshot are copied, the rest is shared with it.
+        isLayoutChangedDuringExtraction = false
+        extraction = ViewTreeExtraction(view, activityDetails.viewDetails,
+                Configurations.screenTracesMaxNodes(), Configurations.screenTracesMaxDepth(), arrayListOf())
+        continueExtraction()
+    }
+
+    private fun continueExtraction() {
+        val extraction = extraction ?: return
+
+        if (!extraction.resume(System.nanoTime() + Configurations.screenTracesFrameBudgetNanoseconds())) {
+            // The frame's budget is spent, the host's frames come first
+            Choreographer.getInstance().postFrameCallback(extractionFrameCallback)
+            return
+        }
+
+        this.extraction = null
+        val updatedViewDetails: ViewDetails? = extraction.result
+        val activityDetails = activityDetails
+        // An unchanged tree is the same instance, though a seeded visit still has to lose its partial mark
+        if (activityDetails != null && updatedViewDetails != null &&
+                (updatedViewDetails !== activityDetails.viewDetails || activityDetails.isPartial != extraction.isPartial)) {
+            activityDetails.update(updatedViewDetails, extraction.isPartial)
+            if (COHostApplication.shared().isHostAppDebuggable) {
+                // The delta itself is computed when the report is encoded, this only tells how large it is
+                SdkLogger.log(TAG, "${activityDetails.name} changed nodes: ${extraction.changedNodes}")
+            }
+
+            onSnapshot(activityDetails)
+        }
+
+        if (isLayoutChangedDuringExtraction) {
+            scheduleSnapshot()
+        }
+    }
+
+    /**
+     * Removes the listener and cancels the pending snapshot, the observer can't be used afterwards.
+     */
+    @MainThread
+    fun stop() {
+        isStopped = true
+        mainThreadHandler.removeCallbacks(snapshotRunnable)
+        Choreographer.getInstance().removeFrameCallback(extractionFrameCallback)
+        extraction = null
+
+        if (isObserving) {
+            isObserving = false
+            decorView.get()?.removeOnLayoutChangeListener(this)
+        }
+
+        activityDetails?.let { compact(it) }
+    }
+
+    /**
+     * The visit is over, its snapshot is only kept (and maybe flushed) from now on.
+     */
+    private fun compact(activityDetails: ActivityDetails) {
+        COHostApplication.shared().runInBackgroundThread { activityDetails.compact() }
+    }
+}
@@ -1,26 +1,158 @@
 package com.crashops.sdk.logic
 
 import android.app.Activity
+import android.os.Looper
+import com.crashops.sdk.COHostApplication
+import com.crashops.sdk.CrashOps
+import com.crashops.sdk.configuration.Configurations
 import com.crashops.sdk.data.Repository
 import com.crashops.sdk.data.model.ActivityDetails
+import com.crashops.sdk.data.model.ViewTreeExtraction
+import com.crashops.sdk.util.SdkLogger
+import java.lang.ref.WeakReference
+import java.util.*
 
+/**
+ * Keeps the latest screen snapshots in memory and writes them in one go (see [flush]),
+ * instead of writing a file for every layout change.
+ *
+ * In the "on crash" mode (see [Configurations.isCapturingScreensOnCrash]) layout changes aren't observed at all,
+ * every resumed screen gets only a summary (its root view) and is fully captured once an error occurs. Views are captured
+ * on the main thread only: errors logged on other threads post their capture to it, fatal crashes there keep the summary.
+ */
 class ActivityTracer: ActivityTraceable {
-    private val tracers: HashMap<Activity,ActivityDetails> = hashMapOf()
+    companion object {
+        private val TAG: String = ActivityTracer::class.java.simpleName
+
+        private const val CRASH_CAPTURE_BUDGET_NANOSECONDS: Long = 100 * 1_000_000L
+    }
+
+    private var topActivity: WeakReference<Activity>? = null
+
+    /**
+     * The top Activity's summary, or its capture if an error occurred since.
+     * Only the main thread may touch views, fatal crashes of other threads get this one as is.
+     */
+    @Volatile
+    private var lastMainThreadSnapshot: ActivityDetails? = null
+
+    // Weak keys, a destroyed Activity that was somehow missed won't leak
+    private val observers: WeakHashMap<Activity, ActivityLayoutObserver> = WeakHashMap()
+
+    /**
+     * The latest snapshots, oldest first.
+     */
+    private val snapshots: ArrayDeque<ActivityDetails> = ArrayDeque()
+
+    /**
+     * The snapshots that are new or were updated since the last flush.
+     */
+    private val unflushedSnapshots: MutableSet<ActivityDetails> = Collections.newSetFromMap(IdentityHashMap())
 
     override fun addActivityToTrace(activity: Activity) {
-        val activityDetails = ActivityDetails(activity)
-        tracers[activity] = activityDetails
-        Repository.instance.persistBreadcrumb(activityDetails)
+        if (Configurations.isCapturingScreensOnCrash()) {
+            observers.remove(activity)?.stop()
+
+            val rootOnly = ViewTreeExtraction(activity.window.decorView, null, 1, 0)
+            val summary = ActivityDetails(activity, rootOnly.finishNow(), true)
+            topActivity = WeakReference(activity)
+            lastMainThreadSnapshot = summary
+            onSnapshot(summary)
+            return
+        }
+
+        // One observer per Activity, no matter how many times it's resumed
+        val observer = observers.getOrPut(activity) {
+            ActivityLayoutObserver(activity) { onSnapshot(it) }
+        }
+        observer.onResumed(activity)
+    }
+
+    private fun onSnapshot(activityDetails: ActivityDetails) {
+        synchronized(snapshots) {
+            if (snapshots.none { it === activityDetails }) {
+                snapshots.addLast(activityDetails)
+                while (snapshots.size > Math.max(1, Configurations.screenTracesRingCapacity())) {
+                    unflushedSnapshots.remove(snapshots.removeFirst())
+                }
+            }
+
+            unflushedSnapshots.add(activityDetails)
+        }
     }
 
     override fun tracesReport(sessionId: String): List<ActivityDetails> {
-        return Repository.instance.traces(sessionId)
+        val stored = Repository.instance.traces(sessionId)
+        if (sessionId != CrashOps.getInstance().sessionId) return stored
+
+        // The in-memory snapshots are the latest versions
+        val tracesByTimestamp = LinkedHashMap<Long, ActivityDetails>()
+        stored.forEach { tracesByTimestamp[it.timestamp] = it }
+        synchronized(snapshots) {
+            snapshots.forEach { tracesByTimestamp[it.timestamp] = it }
+        }
+
+        return tracesByTimestamp.values.sortedBy { it.timestamp }
+    }
+
+    override fun flush() {
+        val unflushed = synchronized(snapshots) {
+            val unflushed = snapshots.filter { unflushedSnapshots.contains(it) }
+            unflushedSnapshots.clear()
+            unflushed
+        }
+
+        if (unflushed.isEmpty()) return
+
+        if (Repository.instance.persistBreadcrumbs(unflushed)) {
+            SdkLogger.log(TAG, "flushed ${unflushed.size} snapshots")
+        } else {
+            synchronized(snapshots) {
+                unflushedSnapshots.addAll(unflushed)
+            }
+        }
+    }
+
+    override fun onError(isFatal: Boolean) {
+        if (!Configurations.isCapturingScreensOnCrash()) return
+
+        val snapshot = lastMainThreadSnapshot ?: return
+        val budget = if (isFatal) CRASH_CAPTURE_BUDGET_NANOSECONDS else Configurations.screenTracesFrameBudgetNanoseconds()
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            capture(snapshot, budget)
+        } else if (!isFatal) {
+            // The process goes on, and the traces are only read when the report is uploaded, so the capture still makes it
+            COHostApplication.shared().runOnUiThread {
+                capture(snapshot, budget)
+                onSnapshot(snapshot)
+            }
+        }
+
+        onSnapshot(snapshot)
+    }
+
+    /**
+     * Runs on the main thread. Same visit, the capture replaces its summary.
+     */
+    private fun capture(snapshot: ActivityDetails, budgetNanoseconds: Long) {
+        // Another screen was resumed since the error occurred
+        if (snapshot !== lastMainThreadSnapshot) return
+
+        val activity = topActivity?.get() ?: return
+        val extraction = ViewTreeExtraction(activity.window.decorView, snapshot.viewDetails,
+                Configurations.screenTracesMaxNodes(), Configurations.screenTracesMaxDepth())
+        extraction.resume(System.nanoTime() + budgetNanoseconds)
+        snapshot.update(extraction.finishNow(), extraction.isPartial)
+    }
+
+    override fun latestSnapshot(): ActivityDetails? {
+        return synchronized(snapshots) {
+            snapshots.peekLast()
+        }
     }
 
     override fun stopTracing(activity: Activity) {
-        val activityDetails = tracers[activity]
-        activityDetails?.stopObserving(activity)
-        tracers.remove(activity)
+        observers.remove(activity)?.stop()
     }
 }
 
@@ -28,4 +160,19 @@ interface ActivityTraceable {
     fun tracesReport(sessionId: String): List<ActivityDetails>
     fun stopTracing(activity: Activity)
     fun addActivityToTrace(activity: Activity)
+
+    /**
+     * Writes the snapshots that aren't stored yet, this may run on any thread.
+     */
+    fun flush()
+
+    /**
+     * A crash or an error is being logged, on the thread it occurred on.
+     */
+    fun onError(isFatal: Boolean)
+
+    /**
+     * The screen that's visible (or was, before the app went to background), this may run on any thread.
+     */
+    fun latestSnapshot(): ActivityDetails?
 }
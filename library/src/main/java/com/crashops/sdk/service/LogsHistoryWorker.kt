@@ -1,39 +1,50 @@
 package com.crashops.sdk.service
 
 import android.content.Context
-import android.os.Handler
-import android.os.HandlerThread
-import androidx.annotation.Nullable
+import android.util.Base64
 import androidx.concurrent.futures.CallbackToFutureAdapter
 import androidx.work.*
 import com.crashops.sdk.COHostApplication
 import com.crashops.sdk.communication.Communicator
-import com.crashops.sdk.configuration.Configurations
+import com.crashops.sdk.communication.ReportPayload
+import com.crashops.sdk.communication.ServerCapabilities
 import com.crashops.sdk.data.Repository
+import com.crashops.sdk.data.model.TraceDeltaEncoder
 import com.crashops.sdk.data.model.toJson
-import com.crashops.sdk.data.toJson
 import com.crashops.sdk.service.LogsHistoryWorker.Companion.TAG
 import com.crashops.sdk.util.*
 import com.google.common.util.concurrent.ListenableFuture
 import org.json.JSONArray
+import org.json.JSONObject
 import java.io.File
+import java.io.IOException
+import java.util.*
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicReference
 
 
 class LogsHistoryWorker(appContext: Context, workerParams: WorkerParameters) : ListenableWorker(appContext, workerParams) {
 
-    private val sdkBackgroundHandler: Handler by lazy {
-        val appBackgroundThread = HandlerThread(Strings.SDK_NAME + "_BackgroundThread")
-        appBackgroundThread.start()
-        Handler(appBackgroundThread.looper)
-    }
-
     private var mFuture: CallbackToFutureAdapter.Completer<Result>? = null
-    private var bgTask: BackgroundRunnable? = null
 
     companion object {
         val TAG = LogsHistoryWorker::class.java.simpleName
+
+        /**
+         * What's spliced into a stored report when it's sent: its session's screen traces and its wireframe.
+         * They're prepared when the report is admitted to a pass, so the cellular budget covers them too.
+         */
+        private class ReportAttachments(val tracesJsonString: String?, val isDeltaEncoded: Boolean, val wireframeJsonString: String?) {
+            val bytes: Long
+                get() = (tracesJsonString?.length?.toLong() ?: 0) + (wireframeJsonString?.length?.toLong() ?: 0)
+        }
+        /**
+         * The logs being uploaded, by file name. A pass that timed out (see [UploadCoordinator.PASS_TIMEOUT_MILLISECONDS])
+         * may still be uploading some, the next pass mustn't send them again (and stage them over them).
+         */
+        private val inFlightLogFileNames: MutableSet<String> = Collections.synchronizedSet(HashSet())
+
         private fun NAME(context: Context): String {
             return "${Strings.SDK_NAME}-${context.packageName}"
         }
@@ -81,28 +92,27 @@ class LogsHistoryWorker(appContext: Context, workerParams: WorkerParameters) : L
             return lastCallTimestamp
         }
 
+        /**
+         * Signals the [UploadCoordinator], the pass will join any pass that's already scheduled.
+         */
         @JvmStatic
-        fun runIfIdle(context: Context, callback: (Boolean?) -> Unit = { }) {
-            if (!BackgroundRunnable.isWorking) {
-                BackgroundRunnable.work(context.applicationContext) { latestLog ->
-                    callback.invoke(latestLog != null)
-                }
-            } else {
-                callback.invoke(null)
-            }
+        @JvmOverloads
+        fun runIfIdle(context: Context, trigger: UploadCoordinator.Trigger = UploadCoordinator.Trigger.Foreground, callback: (Boolean?) -> Unit = { }) {
+            UploadCoordinator.instance.signal(context, trigger, callback)
         }
 
         fun runNow(context: Context, callback: Utils.Callback<Boolean?>) {
-            BackgroundRunnable.work(context.applicationContext) { didSucceed ->
-                callback.onCallback(didSucceed != null)
+            UploadCoordinator.instance.signal(context, UploadCoordinator.Trigger.Error) { didSucceed ->
+                callback.onCallback(didSucceed)
             }
         }
 
         // From: https://medium.com/google-developers/scheduling-jobs-like-a-pro-with-jobscheduler-286ef8510129
         @JvmStatic
         fun registerSelf(context: Context): Boolean {
+            // The finer decisions (metered networks, charging, cellular budget) are made by `UploadPolicy` on every pass
             val constraints = Constraints.Builder()
-                .setTriggerContentUpdateDelay(2, TimeUnit.HOURS)
+                    .setRequiredNetworkType(NetworkType.CONNECTED)
                     .build()
 
             try {
@@ -131,13 +141,53 @@ class LogsHistoryWorker(appContext: Context, workerParams: WorkerParameters) : L
         }
 
         fun uploadHistory(callback: Utils.Callback<Boolean?>) {
-            val crashLogFiles = Repository.instance.loadCrashLogFiles()
-            val errorLogFiles = Repository.instance.loadErrorLogFiles()
+            val crashLogFiles = Repository.instance.loadCrashLogFiles().filter { !inFlightLogFileNames.contains(it.name) }
+            val errorLogFiles = Repository.instance.loadErrorLogFiles().filter { !inFlightLogFileNames.contains(it.name) }
 
             if (crashLogFiles.size == errorLogFiles.size && crashLogFiles.size == 0) {
                 // Life's good - No logs at all, keep calm and carry on :)
+                PresenceReporter.instance.takePending()?.let {
+                    PresenceReporter.instance.send(it)
+                }
                 callback.onCallback(true)
             } else {
+                val context = COHostApplication.shared()
+                val conditions = UploadPolicy.instance.currentConditions(context)
+                SdkLogger.log(TAG, "uploading history, conditions: $conditions")
+
+                // Reports are admitted in order (crashes first). Nothing is charged before it's sent, so every admitted
+                // report reserves its bytes, and its attachments', out of the cellular budget
+                val policy = UploadPolicy.instance
+                val allowedFiles: ArrayList<File> = arrayListOf()
+                val attachmentsByFile: HashMap<File, ReportAttachments> = hashMapOf()
+                val tracesBySession: HashMap<String, Pair<String, Boolean>?> = hashMapOf()
+                var reservedBytes = 0L
+                val candidates = crashLogFiles.map { it to UploadPolicy.Payload.FatalCrash } +
+                        errorLogFiles.map { it to UploadPolicy.Payload.NonFatalError }
+                for ((logFile, payload) in candidates) {
+                    val reportBytes = logFile.length()
+                    if (!policy.allows(context, payload, reportBytes, conditions, reservedBytes)) continue
+
+                    val attachments = attachmentsOf(logFile, tracesBySession)
+                    if (attachments.bytes > 0 && !policy.allows(context, UploadPolicy.Payload.ScreenTraces, attachments.bytes, conditions, reservedBytes + reportBytes)) {
+                        // The report waits with its traces rather than going out without them
+                        SdkLogger.log(TAG, "holding ${logFile.name}, its screen traces are held")
+                        continue
+                    }
+
+                    allowedFiles.add(logFile)
+                    attachmentsByFile[logFile] = attachments
+                    reservedBytes += reportBytes + attachments.bytes
+                }
+
+                val plan = UploadPlan.of(conditions.networkStatus, allowedFiles)
+                attachmentsByFile.keys.retainAll(plan.logFiles)
+                val slots = plan.Slots()
+                SdkLogger.log(TAG, "upload plan: $plan")
+
+                // The pending presence ping (if any) will ride along with the first report that goes out
+                val piggybackedPresence = AtomicReference<PresenceReporter.Presence?>(PresenceReporter.instance.takePending())
+
                 val logsSynchronizer = Synchronizer<Boolean> { successes ->
                     val didAllSucceeded = successes.reduce { accumulator, currentBoolean ->
                         accumulator && currentBoolean
@@ -147,124 +197,241 @@ class LogsHistoryWorker(appContext: Context, workerParams: WorkerParameters) : L
                         Utils.debugToast("all files uploaded")
                     }
 
+                    piggybackedPresence.getAndSet(null)?.let {
+                        PresenceReporter.instance.send(it)
+                    }
+
                     callback.onCallback(didAllSucceeded)
                 }
 
                 if (crashLogFiles.size > 0) {
                     val crashLogsHolder = logsSynchronizer.createHolder()
 
-                    val synchronizer = Synchronizer<String> { successes ->
+                    uploadLogFiles(context, crashLogFiles, plan, slots, conditions, attachmentsByFile, piggybackedPresence) { successes ->
+                        crashLogsHolder.release(successes.all { it?.isNotEmpty() ?: false })
 
-                        var didAllSucceeded = true
-                        successes.forEach {
-                            didAllSucceeded = didAllSucceeded && (it?.isNotEmpty() ?: false)
+                        if (successes.isNotEmpty()) {
+                            Repository.instance.previousCrashLogs = successes.mapNotNull {
+                                it
+                            }
                         }
+                    }
+                }
 
-                        crashLogsHolder.release(didAllSucceeded)
+                if (errorLogFiles.size > 0) {
+                    val errorLogsHolder = logsSynchronizer.createHolder()
 
-                        Repository.instance.previousCrashLogs = successes.mapNotNull {
-                            it
-                        }
+                    uploadLogFiles(context, errorLogFiles, plan, slots, conditions, attachmentsByFile, piggybackedPresence) { successes ->
+                        errorLogsHolder.release(successes.all { it?.isNotEmpty() ?: false })
                     }
+                }
+            }
+        }
 
-                    crashLogFiles.forEach {
-                        val holder = synchronizer.createHolder()
+        /**
+         * Uploads the log files that made it into the pass's [UploadPlan] (only what the [UploadPolicy] allows under the given conditions),
+         * the rest stay on disk for a later pass.
+         */
+        private fun uploadLogFiles(context: Context, logFiles: List<File>, plan: UploadPlan, slots: UploadPlan.Slots, conditions: UploadPolicy.Conditions, attachmentsByFile: Map<File, ReportAttachments>, piggybackedPresence: AtomicReference<PresenceReporter.Presence?>, onDone: (List<String?>) -> Unit) {
+            val allowedFiles = logFiles.filter { plan.logFiles.contains(it) }
+
+            if (allowedFiles.isEmpty()) {
+                // Everything is held for now, it's not a failure.
+                onDone(listOf())
+                return
+            }
 
-                        val logJsonObject = it.readText().toJson() ?: run {
-                            holder.release()
-                            return@forEach
-                        }
+            // Reports that were acknowledged but survived (e.g. the process died before deleting them) aren't sent again
+            val ledger = UploadLedger.instance
+            val pendingReports = linkedMapOf<File, String>()
+            allowedFiles.forEach { logFile ->
+                val idempotencyKey = ledger.keyOf(logFile) ?: return@forEach
+                if (!inFlightLogFileNames.add(logFile.name)) {
+                    SdkLogger.log(TAG, "${logFile.name} is already being uploaded")
+                    return@forEach
+                }
 
-                        val sessionId = logJsonObject.optString(Constants.Keys.Json.SESSION_ID)
+                if (ledger.isAcknowledged(idempotencyKey)) {
+                    SdkLogger.log(TAG, "${logFile.name} was already acknowledged")
+                    deleteLogFile(logFile)
+                    inFlightLogFileNames.remove(logFile.name)
+                } else {
+                    pendingReports[logFile] = idempotencyKey
+                }
+            }
 
-                        if (sessionId.isEmpty()) {
-                            holder.release()
-                            return@forEach
-                        }
+            if (pendingReports.isEmpty()) {
+                onDone(listOf())
+                return
+            }
 
-                        val screenTraces = Repository.instance.tracer?.tracesReport(sessionId)?.map { activityDetails ->
-                            activityDetails.toJson()
-                        }
+            val synchronizer = Synchronizer<String> { successes ->
+                onDone(successes)
+            }
 
-                        screenTraces?.let { tracesList ->
-                            logJsonObject.put(Constants.Keys.Json.SCREEN_TRACES, JSONArray(tracesList))
+            pendingReports.forEach { (logFile, idempotencyKey) ->
+                val holder = synchronizer.createHolder()
+
+                slots.run { done ->
+                    // Whatever happens with this report, its slot and holder are released exactly once
+                    val isReleased = AtomicBoolean(false)
+                    val onReportDone: (String?) -> Unit = { result ->
+                        if (isReleased.compareAndSet(false, true)) {
+                            inFlightLogFileNames.remove(logFile.name)
+                            holder.release(result)
+                            done()
                         }
+                    }
 
-                        Communicator.instance.report(logJsonObject.toString()) { result ->
-                            SdkLogger.log(result)
-                            val response = result as? Pair<*, *>
-
-                            val httpResponseCode = response?.first as? Int ?: 100
+                    try {
+                        uploadReport(context, logFile, idempotencyKey, conditions, attachmentsByFile[logFile], piggybackedPresence, onReportDone)
+                    } catch (e: Exception) {
+                        SdkLogger.error(TAG, e)
+                        onReportDone(null)
+                    }
+                }
+            }
+        }
 
-                            if (httpResponseCode == 202 || (httpResponseCode in 400..499)) {
-                                try {
-                                    it.delete()
-                                } catch (exception: java.lang.Exception) {
-                                    SdkLogger.error(TAG, exception)
-                                }
-                            }
+        /**
+         * @param tracesBySession The traces of the sessions that were already encoded in this pass (with whether they're delta encoded).
+         */
+        private fun attachmentsOf(logFile: File, tracesBySession: HashMap<String, Pair<String, Boolean>?>): ReportAttachments {
+            val traces = Repository.instance.sessionIdOf(logFile)?.let { sessionId ->
+                if (!tracesBySession.containsKey(sessionId)) {
+                    tracesBySession[sessionId] = encodedTraces(sessionId)
+                }
+                tracesBySession[sessionId]
+            }
 
-                            holder.release((response?.second as? String) ?: "")
-                        }
-                    }
+            val wireframeJsonString = Repository.instance.wireframeOf(logFile)?.let { wireframeFile ->
+                try {
+                    JSONObject.quote(Base64.encodeToString(wireframeFile.readBytes(), Base64.NO_WRAP))
+                } catch (e: IOException) {
+                    SdkLogger.error(TAG, e)
+                    null
                 }
+            }
 
-                if (errorLogFiles.size > 0) {
-                    val errorLogsHolder = logsSynchronizer.createHolder()
+            return ReportAttachments(traces?.first, traces?.second ?: false, wireframeJsonString)
+        }
 
-                    val synchronizer = Synchronizer<String> { successes ->
-                        var didAllSucceeded = true
-                        successes.forEach {
-                            didAllSucceeded = didAllSucceeded && (it?.isNotEmpty() ?: false)
-                        }
+        /**
+         * @return `null` if the session has no traces.
+         */
+        private fun encodedTraces(sessionId: String): Pair<String, Boolean>? {
+            val traces = Repository.instance.tracer?.tracesReport(sessionId)
+            if (traces.isNullOrEmpty()) return null
 
-                        errorLogsHolder.release(didAllSucceeded)
-                    }
+            val isDeltaEncoded = ServerCapabilities.instance.supports(ServerCapabilities.TRACE_DELTAS)
+            val tracesJsonString = if (isDeltaEncoded) {
+                TraceDeltaEncoder.encode(traces).toString()
+            } else {
+                JSONArray(traces.map { activityDetails -> activityDetails.toJson() }).toString()
+            }
 
-                    errorLogFiles.forEach {
-                        val holder = synchronizer.createHolder()
+            return Pair(tracesJsonString, isDeltaEncoded)
+        }
 
-                        val logJsonObject = it.readText().toJson() ?: run {
-                            holder.release()
-                            return@forEach
-                        }
+        /**
+         * Completes the stored report (screen traces, wireframe, session header, presence) and sends it.
+         * @param attachments Prepared when the report was admitted to the pass.
+         * @param onDone Receives the server's response body, `null` if the report wasn't sent.
+         */
+        private fun uploadReport(context: Context, logFile: File, idempotencyKey: String, conditions: UploadPolicy.Conditions, attachments: ReportAttachments?, piggybackedPresence: AtomicReference<PresenceReporter.Presence?>, onDone: (String?) -> Unit) {
+            val policy = UploadPolicy.instance
+
+            val reportPayload = ReportPayload.from(logFile) ?: run {
+                onDone(null)
+                return
+            }
 
-                        val sessionId = logJsonObject.optString(Constants.Keys.Json.SESSION_ID)
+            val sessionId = Repository.instance.sessionIdOf(logFile) ?: run {
+                onDone(null)
+                return
+            }
 
-                        if (sessionId.isEmpty()) {
-                            holder.release()
-                            return@forEach
-                        }
+            attachments?.tracesJsonString?.let { tracesJsonString ->
+                reportPayload.splice(Constants.Keys.Json.SCREEN_TRACES, tracesJsonString)
+                if (attachments.isDeltaEncoded) {
+                    reportPayload.splice(Constants.Keys.Json.SCREEN_TRACES_ENCODING, JSONObject.quote(TraceDeltaEncoder.ENCODING))
+                }
+            }
 
-                        val screenTraces = Repository.instance.tracer?.tracesReport(sessionId)?.map { activityDetails ->
-                            activityDetails.toJson()
-                        }
+            attachments?.wireframeJsonString?.let {
+                reportPayload.splice(Constants.Keys.Json.WIREFRAME, it)
+            }
 
-                        screenTraces?.let { tracesList ->
-                            logJsonObject.put(Constants.Keys.Json.SCREEN_TRACES, JSONArray(tracesList))
-                        }
+            SessionHeaders.instance.prepare(reportPayload, sessionId) { schemaVersion ->
+                if (schemaVersion == null) {
+                    onDone(null)
+                    return@prepare
+                }
+
+                if (ResumableUploader.instance.isResumable(logFile, reportPayload)) {
+                    // Its staged bytes may outlive this pass, so the presence ping won't ride along with it
+                    ResumableUploader.instance.upload(logFile, reportPayload, schemaVersion, idempotencyKey) { response, bytesSent ->
+                        policy.onBytesSent(context, bytesSent, conditions)
+                        onReportResponse(logFile, idempotencyKey, response, onDone)
+                    }
+                    return@prepare
+                }
 
-                        Communicator.instance.report(logJsonObject.toString()) { result ->
-                            SdkLogger.log(result)
-                            val response = result as? Pair<*, *>
+                val presence = piggybackedPresence.getAndSet(null)
+                presence?.let {
+                    reportPayload.splice(Constants.Keys.Json.PRESENCE, it.delta.toString())
+                }
 
-                            val httpResponseCode = response?.first as? Int ?: 100
+                Communicator.instance.report(reportPayload, schemaVersion, idempotencyKey) { result, bytesSent ->
+                    SdkLogger.log(result)
+                    val response = result as? Pair<*, *>
 
-                            if (httpResponseCode == 202 || (httpResponseCode in 400..499)) {
-                                try {
-                                    it.delete()
-                                } catch (exception: java.lang.Exception) {
-                                    SdkLogger.error(TAG, exception)
-                                }
-                            }
+                    val httpResponseCode = response?.first as? Int ?: 100
 
-                            holder.release((response?.second as? String) ?: "")
+                    presence?.let {
+                        if (httpResponseCode == 202) {
+                            PresenceReporter.instance.acknowledge(it)
+                        } else {
+                            PresenceReporter.instance.send(it)
                         }
                     }
+
+                    if (response != null) {
+                        // What went on the wire, after the codec and the compression
+                        policy.onBytesSent(context, bytesSent, conditions)
+                    }
+
+                    onReportResponse(logFile, idempotencyKey, response, onDone)
                 }
             }
         }
 
+        /**
+         * Deletes the log once the server accepted it (or rejected it for good).
+         */
+        private fun onReportResponse(logFile: File, idempotencyKey: String, response: Pair<*, *>?, onDone: (String?) -> Unit) {
+            val httpResponseCode = response?.first as? Int ?: 100
+            if (httpResponseCode == 202) {
+                UploadLedger.instance.acknowledge(idempotencyKey)
+            }
+
+            if (httpResponseCode == 202 || (httpResponseCode in 400..499)) {
+                deleteLogFile(logFile)
+            }
+
+            onDone((response?.second as? String) ?: "")
+        }
+
+        private fun deleteLogFile(logFile: File) {
+            try {
+                logFile.delete()
+                Repository.instance.wireframeOf(logFile)?.delete()
+                ResumableUploader.instance.discard(logFile)
+            } catch (exception: java.lang.Exception) {
+                SdkLogger.error(TAG, exception)
+            }
+        }
+
         @JvmStatic
         fun testSelf(context: Context) {
             if (Utils.isReleaseVersion) return
@@ -285,17 +452,13 @@ class LogsHistoryWorker(appContext: Context, workerParams: WorkerParameters) : L
 
             mFuture = completer
 
-            bgTask = BackgroundRunnable(applicationContext, onResult = { resultString ->
-                resultString?.let {
-                    completer?.set(ListenableWorker.Result.success())
-                } ?: run {
+            SdkLogger.log(TAG, "Called `startWork`...")
+            UploadCoordinator.instance.signal(applicationContext, UploadCoordinator.Trigger.PeriodicJob) { didSucceed ->
+                if (didSucceed == false) {
                     completer?.set(Result.retry())
+                } else {
+                    completer?.set(Result.success())
                 }
-            })
-
-            SdkLogger.log(TAG, "Called `startWork`...")
-            bgTask?.let {
-                sdkBackgroundHandler.post(it)
             }
 
             NAME(applicationContext)
@@ -304,8 +467,6 @@ class LogsHistoryWorker(appContext: Context, workerParams: WorkerParameters) : L
 
     override fun onStopped() {
         super.onStopped()
-        sdkBackgroundHandler.removeCallbacks(null)
-        bgTask?.onResult?.invoke(null)
         mFuture?.setException(Exception("Stopped by OS"))
     }
 }
@@ -313,93 +474,3 @@ class LogsHistoryWorker(appContext: Context, workerParams: WorkerParameters) : L
 private fun File.zipIt(): File? {
     return Zipper.zipIt(this)
 }
-
-private class BackgroundRunnable(private val applicationContext: Context, @Nullable val onResult: ((String?) -> Unit)? = null) : Runnable {
-
-    companion object {
-        private val _isWorking: AtomicBoolean = AtomicBoolean(false)
-
-        val isWorking: Boolean
-            get() {
-                return _isWorking.get()
-            }
-
-        // Invoked manually by the app / widget (1)
-        fun work(appContext: Context, onResult: ((String?) -> Unit)) {
-            BackgroundRunnable(appContext, onResult).runAsync()
-        }
-    }
-
-    private var previousCrashLogs: ArrayList<File>? = null
-    private var previousErrorLogs: ArrayList<File>? = null
-
-    private val backgroundHandler: Handler by lazy {
-        val handlerThread = HandlerThread("${Strings.SDK_NAME}.service")
-        handlerThread.start()
-        Handler(handlerThread.looper)
-    }
-
-    private fun shouldRunNow(): Boolean {
-        if (!Configurations.isEnabled()) return false
-        if (isWorking) return false
-        if (anyLeftOversExist) return true
-
-        return false
-    }
-
-    private val anyLeftOversExist: Boolean get() {
-        if (!Configurations.isEnabled()) return false
-
-        val crashLogs =  Repository.instance.loadCrashLogFiles()
-        val errorLogs =  Repository.instance.loadErrorLogFiles()
-        if (crashLogs.size == 0 && errorLogs.size == 0) return false
-
-        val isSameCrashLogsList = (previousCrashLogs?.intersect(crashLogs)?.size ?: 0) == crashLogs.size
-        val isSameErrorLogsList = (previousErrorLogs?.intersect(errorLogs)?.size ?: 0) == errorLogs.size
-
-        previousCrashLogs = crashLogs
-        previousErrorLogs = errorLogs
-
-        return !(isSameCrashLogsList && isSameErrorLogsList)
-    }
-
-    // Invoked manually by the app / widget (2)
-    private fun runAsync() {
-        backgroundHandler.post(this)
-    }
-
-    override fun run() {
-        SdkLogger.log(TAG, "background worker started...")
-
-        executeUpload(false)
-    }
-
-    fun executeUpload(forced: Boolean = false) {
-        SdkLogger.log(TAG, "background worker started...")
-
-        if (shouldRunNow() || forced) {
-            if (isWorking) return
-            _isWorking.set(true)
-
-            LogsHistoryWorker.uploadHistory(object : Utils.Callback<Boolean?> {
-                override fun onCallback(result: Boolean?) {
-                    SdkLogger.log(TAG, result)
-
-                    _isWorking.set(false)
-
-                    if (anyLeftOversExist) {
-                        // Retry and see if there are leftovers...
-                        executeUpload(true)
-                    } else {
-                        onResult?.invoke(result?.toString())
-                        LogsHistoryWorker.setLastCallTimestamp(applicationContext, Utils.now())
-                    }
-                }
-            })
-        } else {
-            SdkLogger.log(TAG, "Periodic worker fired but it will be ignored because the app is in foreground / service is disabled by the user...")
-            onResult?.invoke(null)
-            LogsHistoryWorker.setLastCallTimestamp(applicationContext, Utils.now())
-        }
-    }
-}
@@ -0,0 +1,115 @@
+package com.crashops.sdk.service
+
+import android.content.Context
+import com.crashops.sdk.communication.Communicator
+import com.crashops.sdk.data.Repository
+import com.crashops.sdk.data.toJson
+import com.crashops.sdk.util.Constants
+import com.crashops.sdk.util.SdkLogger
+import org.json.JSONArray
+import org.json.JSONObject
+
+/**
+ * Sends the "app launched" presence pings.
+ *
+ * Only what changed since the last acknowledged ping is sent (the identity fields are always included).
+ * A pending ping rides along with the first report of the next upload pass, and it's sent on its own only if
+ * that pass has nothing to upload.
+ */
+class PresenceReporter private constructor() {
+    class Presence(internal val snapshot: JSONObject, val delta: JSONObject)
+
+    companion object {
+        @JvmStatic
+        val instance: PresenceReporter = PresenceReporter()
+
+        private val TAG: String = PresenceReporter::class.java.simpleName
+
+        private val IDENTITY_KEYS = arrayOf(
+                Constants.Keys.Json.SESSION_ID,
+                Constants.Keys.Json.DEVICE_ID,
+                Constants.Keys.Json.DEVICE_PLATFORM,
+                Constants.Keys.Json.TIMESTAMP
+        )
+    }
+
+    private var pending: Presence? = null
+
+    /**
+     * Stores the current session details as the pending ping and signals an upload pass to carry it.
+     */
+    fun update(context: Context, sessionDetails: JSONObject) {
+        val acknowledged = Repository.instance.loadCustomValue(Constants.Keys.AcknowledgedPresence)?.toJson()
+        val delta = if (acknowledged == null) {
+            sessionDetails
+        } else {
+            val changes = diff(sessionDetails, acknowledged) ?: JSONObject()
+            IDENTITY_KEYS.forEach { key ->
+                changes.put(key, sessionDetails.opt(key))
+            }
+            changes.put(Constants.Keys.Json.IS_DELTA, true)
+        }
+
+        synchronized(this) {
+            pending = Presence(sessionDetails, delta)
+        }
+
+        UploadCoordinator.instance.signal(context, UploadCoordinator.Trigger.Launch)
+    }
+
+    @Synchronized
+    fun takePending(): Presence? {
+        val presence = pending
+        pending = null
+        return presence
+    }
+
+    fun acknowledge(presence: Presence) {
+        Repository.instance.storeCustomValue(Constants.Keys.AcknowledgedPresence, presence.snapshot.toString())
+    }
+
+    /**
+     * Sends the ping on its own, used when there was no report to carry it.
+     */
+    fun send(presence: Presence) {
+        Communicator.instance.sendPresence(presence.delta.toString()) { result ->
+            val httpResponseCode = (result as? Pair<*, *>)?.first as? Int ?: 0
+            if (httpResponseCode in 200..299) {
+                acknowledge(presence)
+            } else {
+                SdkLogger.error(TAG, "presence ping failed ($httpResponseCode)")
+            }
+        }
+    }
+
+    /**
+     * @return Only the fields of `current` that differ from `base`, nested objects are compared field by field.
+     */
+    private fun diff(current: JSONObject, base: JSONObject): JSONObject? {
+        val changes = JSONObject()
+        val keys = current.keys()
+        while (keys.hasNext()) {
+            val key = keys.next()
+            val value = current.opt(key)
+            val baseValue = base.opt(key)
+
+            if (value is JSONObject && baseValue is JSONObject) {
+                diff(value, baseValue)?.let {
+                    changes.put(key, it)
+                }
+            } else if (value is JSONArray && baseValue is JSONArray) {
+                if (value.toString() != baseValue.toString()) {
+                    changes.put(key, value)
+                }
+            } else if (value != baseValue && value.toString() != baseValue?.toString()) {
+                changes.put(key, value)
+            }
+        }
+
+        return if (changes.length() > 0) {
+            changes
+        } else {
+            null
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.crashops.sdk.service
+
+import com.crashops.sdk.communication.Communicator
+import com.crashops.sdk.communication.ReportPayload
+import com.crashops.sdk.communication.ReportRequestBody
+import com.crashops.sdk.communication.ServerCapabilities
+import com.crashops.sdk.data.Repository
+import com.crashops.sdk.data.toJson
+import com.crashops.sdk.util.SdkLogger
+import okio.Okio
+import org.json.JSONObject
+import java.io.File
+import java.io.IOException
+
+/**
+ * Uploads large reports in parts, so a dropped connection (or a killed process) costs one part instead of the whole report.
+ *
+ * The encoded report is staged once into its own file, the offsets of all parts refer to these bytes.
+ * The upload's ID and the offset the server has committed are persisted after every part.
+ * A resumed upload asks the server for its committed offset first, the persisted one may be behind it.
+ */
+class ResumableUploader internal constructor(
+        private val communicator: Communicator,
+        /**
+         * Where the encoded reports and their upload states are staged, `null` if there's no storage.
+         */
+        private val stagedUploadsFolder: () -> File?
+) {
+    companion object {
+        @JvmStatic
+        val instance: ResumableUploader = ResumableUploader(Communicator.instance) { Repository.instance.stagedUploadsFolder }
+
+        private val TAG: String = ResumableUploader::class.java.simpleName
+
+        /**
+         * Smaller reports are sent in a single request.
+         */
+        const val THRESHOLD_BYTES: Long = 256 * 1024
+
+        const val PART_BYTES: Long = 64 * 1024
+
+        private const val MAX_OFFSET_MISMATCHES = 3
+
+        private const val UPLOAD_ID = "uploadId"
+        private const val OFFSET = "offset"
+        private const val LENGTH = "length"
+        private const val CONTENT_TYPE = "contentType"
+    }
+
+    /**
+     * @return `true` if the report should be uploaded in parts, uploads that were already started are always resumed.
+     */
+    fun isResumable(logFile: File, payload: ReportPayload): Boolean {
+        if (!communicator.environment.supports(ServerCapabilities.RESUMABLE_UPLOADS)) return false
+
+        return payload.contentLength() > THRESHOLD_BYTES || stagedUploadOf(logFile)?.exists() == true
+    }
+
+    /**
+     * The encoded bytes of a log that's being uploaded in resumable parts, they must not change until the upload is done.
+     */
+    private fun stagedUploadOf(logFile: File): File? {
+        return stagedUploadsFolder()?.let { File(it, "${logFile.name}.upload") }
+    }
+
+    /**
+     * The progress of a resumable upload, see [stagedUploadOf].
+     */
+    private fun stagedUploadStateOf(logFile: File): File? {
+        return stagedUploadsFolder()?.let { File(it, "${logFile.name}.state") }
+    }
+
+    /**
+     * Sends the remaining parts of the log's upload, one at a time.
+     * @param callback Receives the server's response to the last request and the number of bytes sent by this call.
+     * The response is `null` if the upload should simply be resumed later.
+     */
+    fun upload(logFile: File, payload: ReportPayload, schemaVersion: Int, idempotencyKey: String, callback: (Pair<Int, String?>?, Long) -> Unit) {
+        val stagedFile = stagedUploadOf(logFile)
+        val stateFile = stagedUploadStateOf(logFile)
+        if (stagedFile == null || stateFile == null) {
+            callback(null, 0)
+            return
+        }
+
+        val state = loadState(stateFile, stagedFile) ?: stage(payload, stagedFile, stateFile) ?: run {
+            callback(null, 0)
+            return
+        }
+
+        val upload = Upload(logFile, stagedFile, stateFile, state, callback)
+        val uploadId = state.optString(UPLOAD_ID)
+        if (uploadId.isEmpty()) {
+            start(upload, schemaVersion, idempotencyKey)
+        } else {
+            resume(upload, uploadId)
+        }
+    }
+
+    /**
+     * Forgets the log's upload, called once the log itself is deleted.
+     */
+    fun discard(logFile: File) {
+        stagedUploadOf(logFile)?.delete()
+        stagedUploadStateOf(logFile)?.delete()
+    }
+
+    private class Upload(val logFile: File,
+                         val stagedFile: File,
+                         val stateFile: File,
+                         val state: JSONObject,
+                         val callback: (Pair<Int, String?>?, Long) -> Unit) {
+        var bytesSent: Long = 0
+        var mismatchesCount: Int = 0
+
+        val length: Long
+            get() = state.optLong(LENGTH)
+
+        fun finish(result: Pair<Int, String?>?) {
+            callback(result, bytesSent)
+        }
+    }
+
+    private fun start(upload: Upload, schemaVersion: Int, idempotencyKey: String) {
+        communicator.startUpload(upload.length, upload.state.optString(CONTENT_TYPE), schemaVersion, idempotencyKey) { result ->
+            val response = result as? Pair<*, *>
+            val httpResponseCode = response?.first as? Int ?: 0
+            val uploadId = (response?.second as? String)?.toJson()?.optString(UPLOAD_ID) ?: ""
+
+            if (httpResponseCode !in 200..299 || uploadId.isEmpty()) {
+                SdkLogger.error(TAG, "couldn't start an upload ($httpResponseCode)")
+                upload.finish(null)
+                return@startUpload
+            }
+
+            upload.state.put(UPLOAD_ID, uploadId)
+            upload.state.put(OFFSET, 0)
+            storeState(upload)
+            sendPart(upload, 0)
+        }
+    }
+
+    private fun resume(upload: Upload, uploadId: String) {
+        communicator.uploadStatus(uploadId) { result ->
+            val response = result as? Pair<*, *>
+            val httpResponseCode = response?.first as? Int ?: 0
+
+            when {
+                httpResponseCode == 202 -> {
+                    // The last part arrived but its response didn't
+                    discard(upload.logFile)
+                    upload.finish(Pair(httpResponseCode, response?.second as? String))
+                }
+                httpResponseCode in 200..299 -> {
+                    val committedOffset = (response?.second as? String)?.toJson()?.optLong(OFFSET, -1) ?: -1
+                    val offset = if (committedOffset in 0..upload.length) committedOffset else upload.state.optLong(OFFSET)
+                    SdkLogger.log(TAG, "resuming upload $uploadId at $offset / ${upload.length}")
+                    sendPart(upload, offset)
+                }
+                httpResponseCode in 400..499 -> {
+                    // The server forgot it (expired?), the next pass will start over
+                    upload.state.remove(UPLOAD_ID)
+                    upload.state.remove(OFFSET)
+                    storeState(upload)
+                    upload.finish(null)
+                }
+                else -> {
+                    upload.finish(null)
+                }
+            }
+        }
+    }
+
+    private fun sendPart(upload: Upload, offset: Long) {
+        val uploadId = upload.state.optString(UPLOAD_ID)
+        val partLength = Math.min(PART_BYTES, upload.length - offset)
+        if (partLength <= 0) {
+            // Everything's committed yet the upload wasn't completed, ask again on the next pass
+            upload.finish(null)
+            return
+        }
+
+        communicator.uploadChunk(uploadId, upload.stagedFile, offset, partLength) { result ->
+            val response = result as? Pair<*, *>
+            val httpResponseCode = response?.first as? Int ?: 0
+            if (response != null) {
+                upload.bytesSent += partLength
+            }
+
+            when {
+                httpResponseCode == 202 -> {
+                    SdkLogger.log(TAG, "upload $uploadId completed")
+                    discard(upload.logFile)
+                    upload.finish(Pair(httpResponseCode, response?.second as? String))
+                }
+                httpResponseCode in 200..299 -> {
+                    val committedOffset = (response?.second as? String)?.toJson()?.optLong(OFFSET, -1) ?: -1
+                    val nextOffset = if (committedOffset in 0..upload.length) committedOffset else offset + partLength
+                    upload.state.put(OFFSET, nextOffset)
+                    storeState(upload)
+                    sendPart(upload, nextOffset)
+                }
+                httpResponseCode == 409 -> {
+                    // An offset mismatch, asks the server where it stands (a few times at most, then the next pass will)
+                    upload.mismatchesCount++
+                    if (upload.mismatchesCount <= MAX_OFFSET_MISMATCHES) {
+                        SdkLogger.log(TAG, "upload $uploadId isn't at $offset")
+                        resume(upload, uploadId)
+                    } else {
+                        upload.finish(null)
+                    }
+                }
+                httpResponseCode == 404 || httpResponseCode == 410 -> {
+                    // The server forgot it (expired?), the next pass will start over
+                    upload.state.remove(UPLOAD_ID)
+                    upload.state.remove(OFFSET)
+                    storeState(upload)
+                    upload.finish(null)
+                }
+                httpResponseCode in 400..499 -> {
+                    // The report itself was rejected
+                    discard(upload.logFile)
+                    upload.finish(Pair(httpResponseCode, response?.second as? String))
+                }
+                else -> {
+                    upload.finish(response?.let { Pair(httpResponseCode, it.second as? String) })
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes the payload into the staged file, the report is never staged again while this upload is alive.
+     */
+    private fun stage(payload: ReportPayload, stagedFile: File, stateFile: File): JSONObject? {
+        val codec = communicator.environment.reportCodec()
+        val temporaryFile = File(stagedFile.parentFile, "${stagedFile.name}.tmp")
+        return try {
+            Okio.buffer(Okio.sink(temporaryFile)).use { sink ->
+                ReportRequestBody(payload, codec).writeTo(sink)
+            }
+
+            if (!temporaryFile.renameTo(stagedFile)) throw IOException("failed to stage ${stagedFile.name}")
+
+            val state = JSONObject()
+            state.put(LENGTH, stagedFile.length())
+            state.put(CONTENT_TYPE, codec.contentType?.toString() ?: "application/octet-stream")
+            stateFile.writeText(state.toString())
+            state
+        } catch (e: IOException) {
+            SdkLogger.error(TAG, e)
+            temporaryFile.delete()
+            stagedFile.delete()
+            null
+        }
+    }
+
+    private fun loadState(stateFile: File, stagedFile: File): JSONObject? {
+        if (!stateFile.exists() || !stagedFile.exists()) return null
+
+        val state = stateFile.readText().toJson() ?: return null
+        return if (state.optLong(LENGTH, -1) == stagedFile.length()) {
+            state
+        } else {
+            null
+        }
+    }
+
+    private fun storeState(upload: Upload) {
+        try {
+            upload.stateFile.writeText(upload.state.toString())
+        } catch (e: IOException) {
+            SdkLogger.error(TAG, e)
+        }
+    }
+}
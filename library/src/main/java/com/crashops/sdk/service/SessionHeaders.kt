@@ -0,0 +1,121 @@
+package com.crashops.sdk.service
+
+import android.content.Context
+import com.crashops.sdk.COHostApplication
+import com.crashops.sdk.communication.Communicator
+import com.crashops.sdk.communication.ReportPayload
+import com.crashops.sdk.communication.ServerCapabilities
+import com.crashops.sdk.data.Repository
+import com.crashops.sdk.util.Constants
+import com.crashops.sdk.util.SdkLogger
+import org.json.JSONObject
+
+/**
+ * Picks the wire schema of every uploaded report.
+ *
+ * The session header (device, host app and SDK details) is stored once per session instead of inside every log.
+ * Servers that advertise [ServerCapabilities.SCHEMA_V2] receive it once per session and the reports only reference it
+ * by their `sessionId`. Otherwise its fields are spliced back into every report, which is exactly the v1 schema.
+ */
+class SessionHeaders private constructor() {
+    companion object {
+        @JvmStatic
+        val instance: SessionHeaders = SessionHeaders()
+
+        private val TAG: String = SessionHeaders::class.java.simpleName
+
+        const val SCHEMA_V1 = 1
+        const val SCHEMA_V2 = 2
+    }
+
+    private val waitingReports: HashMap<String, ArrayList<(Boolean) -> Unit>> = hashMapOf()
+
+    /**
+     * Makes the payload complete for the schema the server speaks.
+     * @param callback Receives the schema version of the payload, or `null` if the report can't be sent right now.
+     */
+    fun prepare(payload: ReportPayload, sessionId: String, callback: (Int?) -> Unit) {
+        val header = Repository.instance.loadSessionHeader(sessionId) ?: run {
+            // Stored before session headers were introduced, the report is self-contained.
+            callback(SCHEMA_V1)
+            return
+        }
+
+        if (!ServerCapabilities.instance.supports(ServerCapabilities.SCHEMA_V2)) {
+            val keys = header.keys()
+            while (keys.hasNext()) {
+                val key = keys.next()
+                if (key == Constants.Keys.Json.SESSION_ID || key == Constants.Keys.Json.DEVICE_PLATFORM) continue
+
+                val value = header.get(key)
+                payload.splice(key, if (value is String) JSONObject.quote(value) else value.toString())
+            }
+
+            callback(SCHEMA_V1)
+            return
+        }
+
+        if (uploadedSessionIds().contains(sessionId)) {
+            callback(SCHEMA_V2)
+            return
+        }
+
+        upload(sessionId, header) { didUpload ->
+            callback(if (didUpload) SCHEMA_V2 else null)
+        }
+    }
+
+    /**
+     * Forgets sessions whose headers are gone, called after [Repository.pruneSessionHeaders].
+     */
+    @Synchronized
+    fun forget(sessionIds: List<String>) {
+        if (sessionIds.isEmpty()) return
+
+        val remaining = uploadedSessionIds().toMutableSet()
+        remaining.removeAll(sessionIds)
+        preferences().edit().putStringSet(Constants.Keys.UploadedSessionHeaders, remaining).apply()
+    }
+
+    private fun upload(sessionId: String, header: JSONObject, onDone: (Boolean) -> Unit) {
+        synchronized(this) {
+            waitingReports[sessionId]?.let {
+                // Already on its way
+                it.add(onDone)
+                return
+            }
+
+            waitingReports[sessionId] = arrayListOf(onDone)
+        }
+
+        Communicator.instance.sendSessionHeader(header.toString()) { result ->
+            val httpResponseCode = (result as? Pair<*, *>)?.first as? Int ?: 0
+            val didUpload = httpResponseCode in 200..299
+            if (didUpload) {
+                markUploaded(sessionId)
+            } else {
+                SdkLogger.error(TAG, "session header upload failed ($httpResponseCode)")
+            }
+
+            val waiting = synchronized(this) {
+                waitingReports.remove(sessionId)
+            }
+
+            waiting?.forEach { it.invoke(didUpload) }
+        }
+    }
+
+    @Synchronized
+    private fun markUploaded(sessionId: String) {
+        val uploaded = uploadedSessionIds().toMutableSet()
+        uploaded.add(sessionId)
+        preferences().edit().putStringSet(Constants.Keys.UploadedSessionHeaders, uploaded).apply()
+    }
+
+    private fun uploadedSessionIds(): Set<String> {
+        return preferences().getStringSet(Constants.Keys.UploadedSessionHeaders, null) ?: setOf()
+    }
+
+    private fun preferences() = COHostApplication.shared()
+            .getSharedPreferences(Constants.Keys.LogsPersistenceFileName, Context.MODE_PRIVATE)
+}
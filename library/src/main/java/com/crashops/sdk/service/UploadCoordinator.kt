@@ -0,0 +1,186 @@
+package com.crashops.sdk.service
+
+import android.content.Context
+import android.os.Handler
+import android.os.HandlerThread
+import android.os.SystemClock
+import com.crashops.sdk.communication.CircuitBreaker
+import com.crashops.sdk.configuration.Configurations
+import com.crashops.sdk.configuration.RemoteConfigurations
+import com.crashops.sdk.data.Repository
+import com.crashops.sdk.util.Constants
+import com.crashops.sdk.util.SdkLogger
+import com.crashops.sdk.util.SdkMetrics
+import com.crashops.sdk.util.Strings
+import com.crashops.sdk.util.Utils
+
+/**
+ * The single gate for upload passes, every trigger (periodic job, app launch, foreground, logged errors) signals it.
+ *
+ * Bursts of signals are debounced into one pass, and at most one pass runs in the process at any given time.
+ * A signal that arrives while a pass is running schedules exactly one more pass right after it.
+ * All the state below is confined to the coordinator's thread.
+ */
+class UploadCoordinator private constructor() {
+    enum class Trigger(val debounceMilliseconds: Long) {
+        PeriodicJob(0),
+        Launch(DEBOUNCE_MILLISECONDS),
+        Foreground(DEBOUNCE_MILLISECONDS),
+        NetworkAvailable(DEBOUNCE_MILLISECONDS),
+        Error(DEBOUNCE_MILLISECONDS)
+    }
+
+    companion object {
+        @JvmStatic
+        val instance: UploadCoordinator = UploadCoordinator()
+
+        private val TAG: String = UploadCoordinator::class.java.simpleName
+
+        const val DEBOUNCE_MILLISECONDS: Long = Constants.ONE_SECOND_MILLISECONDS * 2
+
+        /**
+         * A steady stream of signals will not postpone the pass beyond this.
+         */
+        const val MAX_DEBOUNCE_MILLISECONDS: Long = Constants.ONE_SECOND_MILLISECONDS * 10
+
+        /**
+         * A pass that didn't end by then is considered failed, so a lost callback can't block the uploads for good.
+         * Resumable uploads pick up from their staged state in the next pass.
+         */
+        const val PASS_TIMEOUT_MILLISECONDS: Long = Constants.ONE_MINUTE_MILLISECONDS * 10
+    }
+
+    private val handler: Handler by lazy {
+        val handlerThread = HandlerThread("${Strings.SDK_NAME}.uploads")
+        handlerThread.start()
+        Handler(handlerThread.looper)
+    }
+
+    @Volatile
+    private var isPassRunning = false
+    private var isPassRequested = false
+    @Volatile
+    private var firstPendingSignalTime: Long = 0
+    private var passContext: Context? = null
+    private var pendingCallbacks: ArrayList<(Boolean?) -> Unit> = arrayListOf()
+    private var runningPassCallbacks: List<(Boolean?) -> Unit> = listOf()
+
+    /**
+     * Identifies the running pass, a late callback of a pass that timed out is ignored.
+     */
+    private var passId: Int = 0
+
+    private val passRunnable = Runnable {
+        startPass()
+    }
+
+    private val passWatchdog = Runnable {
+        SdkLogger.error(TAG, "upload pass timed out")
+        endPass(passId, false)
+    }
+
+    /**
+     * Asks for an upload pass.
+     * @param callback Invoked once the pass that covers this signal is done, with `null` if no pass took place.
+     */
+    fun signal(context: Context, trigger: Trigger, callback: ((Boolean?) -> Unit)? = null) {
+        val applicationContext = context.applicationContext
+        handler.post {
+            SdkLogger.log(TAG, "signaled by $trigger")
+            callback?.let {
+                pendingCallbacks.add(it)
+            }
+
+            if (isPassRunning) {
+                // The running pass may have already listed the files, one more pass will follow it.
+                isPassRequested = true
+                return@post
+            }
+
+            schedule(applicationContext, trigger.debounceMilliseconds)
+        }
+    }
+
+    val isPassScheduledOrRunning: Boolean
+        get() = isPassRunning || firstPendingSignalTime > 0
+
+    private fun schedule(context: Context, debounceMilliseconds: Long) {
+        val now = SystemClock.elapsedRealtime()
+        if (firstPendingSignalTime == 0L) {
+            firstPendingSignalTime = now
+        }
+
+        val maxDelay = firstPendingSignalTime + MAX_DEBOUNCE_MILLISECONDS - now
+        val delay = Math.max(0, Math.min(debounceMilliseconds, maxDelay))
+
+        passContext = context
+        handler.removeCallbacks(passRunnable)
+        handler.postDelayed(passRunnable, delay)
+    }
+
+    private fun startPass() {
+        firstPendingSignalTime = 0
+        val context = passContext ?: return
+        val callbacks = pendingCallbacks
+        pendingCallbacks = arrayListOf()
+
+        // Periodic jobs may run in a process where the SDK wasn't launched by the host
+        RemoteConfigurations.instance.refreshIfNeeded()
+
+        if (!Configurations.isEnabled()) {
+            SdkLogger.log(TAG, "upload pass skipped, the SDK is disabled")
+            callbacks.forEach { it.invoke(null) }
+            return
+        }
+
+        if (CircuitBreaker.instance.isRefusing(CircuitBreaker.Endpoint.Reports)) {
+            // No need to read the stored reports, none of them would be sent
+            SdkLogger.log(TAG, "upload pass skipped, the reports circuit is open")
+            callbacks.forEach { it.invoke(null) }
+            return
+        }
+
+        isPassRunning = true
+        passId++
+        val currentPassId = passId
+        runningPassCallbacks = callbacks
+        handler.postDelayed(passWatchdog, PASS_TIMEOUT_MILLISECONDS)
+        SdkLogger.log(TAG, "upload pass started...")
+
+        try {
+            LogsHistoryWorker.uploadHistory(object : Utils.Callback<Boolean?> {
+                override fun onCallback(result: Boolean?) {
+                    handler.post {
+                        endPass(currentPassId, result)
+                    }
+                }
+            })
+        } catch (e: Exception) {
+            SdkLogger.error(TAG, e)
+            endPass(currentPassId, false)
+        }
+    }
+
+    /**
+     * Runs on the coordinator's thread, once per pass: whichever comes first of the pass's callback or its watchdog.
+     */
+    private fun endPass(endedPassId: Int, result: Boolean?) {
+        if (!isPassRunning || endedPassId != passId) return
+
+        val context = passContext ?: return
+        handler.removeCallbacks(passWatchdog)
+        SdkLogger.log(TAG, "upload pass ended: $result, metrics: ${SdkMetrics.instance}")
+        isPassRunning = false
+        LogsHistoryWorker.setLastCallTimestamp(context, Utils.now())
+        SessionHeaders.instance.forget(Repository.instance.pruneSessionHeaders())
+        Repository.instance.pruneStagedUploads()
+        val callbacks = runningPassCallbacks
+        runningPassCallbacks = listOf()
+        callbacks.forEach { it.invoke(result) }
+
+        if (isPassRequested) {
+            isPassRequested = false
+            schedule(context, 0)
+        }
+    }
+}
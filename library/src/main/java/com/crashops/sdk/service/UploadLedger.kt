@@ -0,0 +1,100 @@
+package com.crashops.sdk.service
+
+import android.content.Context
+import com.crashops.sdk.COHostApplication
+import com.crashops.sdk.util.Constants
+import com.crashops.sdk.util.SdkLogger
+import java.io.File
+import java.io.FileInputStream
+import java.io.IOException
+import java.security.MessageDigest
+import java.security.NoSuchAlgorithmException
+
+/**
+ * Remembers the idempotency keys of the last reports the server acknowledged.
+ *
+ * A report's key is derived from its stored content, so a report that was acknowledged but not deleted
+ * (e.g. the process died right after the server's response) is recognized and deleted without being sent again.
+ * The same key is sent with every upload so the server can drop duplicates that still slip through.
+ */
+class UploadLedger private constructor() {
+    companion object {
+        @JvmStatic
+        val instance: UploadLedger = UploadLedger()
+
+        private val TAG: String = UploadLedger::class.java.simpleName
+
+        /**
+         * Older keys are forgotten, their logs are long gone.
+         */
+        const val CAPACITY = 256
+
+        private const val SEPARATOR = "\n"
+    }
+
+    private var _acknowledgedKeys: LinkedHashSet<String>? = null
+    private val acknowledgedKeys: LinkedHashSet<String>
+        get() {
+            _acknowledgedKeys?.let { return it }
+
+            val stored = LinkedHashSet<String>()
+            preferences().getString(Constants.Keys.AcknowledgedReports, null)?.let { keys ->
+                keys.split(SEPARATOR).filterTo(stored) { it.isNotEmpty() }
+            }
+
+            _acknowledgedKeys = stored
+            return stored
+        }
+
+    /**
+     * A hex encoded SHA-256 digest of the log file, read in small chunks.
+     * @return The key, or `null` if the file couldn't be read.
+     */
+    fun keyOf(logFile: File): String? {
+        return try {
+            val digest = MessageDigest.getInstance("SHA-256")
+            FileInputStream(logFile).use { inputStream ->
+                val buffer = ByteArray(8 * 1024)
+                var count = inputStream.read(buffer)
+                while (count >= 0) {
+                    digest.update(buffer, 0, count)
+                    count = inputStream.read(buffer)
+                }
+            }
+
+            digest.digest().joinToString("") { String.format("%02x", it) }
+        } catch (e: IOException) {
+            SdkLogger.error(TAG, e)
+            null
+        } catch (e: NoSuchAlgorithmException) {
+            SdkLogger.error(TAG, e)
+            null
+        }
+    }
+
+    @Synchronized
+    fun isAcknowledged(key: String): Boolean {
+        return acknowledgedKeys.contains(key)
+    }
+
+    /**
+     * Must be called before the acknowledged log is deleted, it's written synchronously for that reason.
+     */
+    @Synchronized
+    fun acknowledge(key: String) {
+        val keys = acknowledgedKeys
+        keys.remove(key)
+        keys.add(key)
+
+        val iterator = keys.iterator()
+        while (keys.size > CAPACITY && iterator.hasNext()) {
+            iterator.next()
+            iterator.remove()
+        }
+
+        preferences().edit().putString(Constants.Keys.AcknowledgedReports, keys.joinToString(SEPARATOR)).commit()
+    }
+
+    private fun preferences() = COHostApplication.shared()
+            .getSharedPreferences(Constants.Keys.LogsPersistenceFileName, Context.MODE_PRIVATE)
+}
@@ -0,0 +1,103 @@
+package com.crashops.sdk.service
+
+import com.crashops.sdk.communication.Reachability
+import com.crashops.sdk.communication.ThroughputEstimator
+import com.crashops.sdk.configuration.Configurations
+import java.io.File
+import java.util.*
+
+/**
+ * How much an upload pass takes on and how many requests it keeps in flight.
+ *
+ * Both are derived from the [ThroughputEstimator]'s estimate of the current network type, so the pass is expected
+ * to end within [Configurations.uploadPassTargetMilliseconds] (well before the OS stops the worker).
+ * The logs that don't fit wait for the next pass.
+ *
+ * The pass's "batch" is the set of reports it takes on ([logFiles]), every report is still sent in its own request.
+ * The reports endpoint accepts one report per request, and the idempotency key, the ledger and the resumable uploads
+ * all work per report, so a fast network gets a larger batch and more concurrent requests rather than bundled bodies.
+ */
+class UploadPlan private constructor(val logFiles: Set<File>, val concurrency: Int) {
+    companion object {
+        const val MAX_CONCURRENCY = 4
+
+        /**
+         * @param logFiles Ordered by priority, the first one is always taken.
+         */
+        fun of(networkStatus: Reachability.NetworkStatus, logFiles: List<File>): UploadPlan {
+            val estimate = ThroughputEstimator.instance.estimate(networkStatus)
+            val concurrency = when {
+                estimate.bytesPerSecond >= 1024 * 1024 -> MAX_CONCURRENCY
+                estimate.bytesPerSecond >= 256 * 1024 -> 3
+                estimate.bytesPerSecond >= 64 * 1024 -> 2
+                else -> 1
+            }
+
+            val targetMilliseconds = Configurations.uploadPassTargetMilliseconds()
+            val plannedFiles = LinkedHashSet<File>()
+            var plannedBytes = 0L
+            for (logFile in logFiles) {
+                val bytes = plannedBytes + logFile.length()
+                val roundTrips = (plannedFiles.size + concurrency) / concurrency
+                val expectedMilliseconds = bytes * 1000 / estimate.bytesPerSecond + roundTrips * estimate.roundTripMilliseconds
+                if (plannedFiles.isNotEmpty() && expectedMilliseconds > targetMilliseconds) break
+
+                plannedFiles.add(logFile)
+                plannedBytes = bytes
+            }
+
+            return UploadPlan(plannedFiles, concurrency)
+        }
+    }
+
+    override fun toString(): String {
+        return "{reports: ${logFiles.size}, concurrency: $concurrency}"
+    }
+
+    /**
+     * Runs the pass's requests, at most [concurrency] at a time.
+     */
+    inner class Slots {
+        private val waiting: Queue<(() -> Unit) -> Unit> = LinkedList()
+        private var inFlight = 0
+
+        /**
+         * @param task Must invoke the given closure once its request is done.
+         */
+        fun run(task: (() -> Unit) -> Unit) {
+            synchronized(this) {
+                if (inFlight >= concurrency) {
+                    waiting.add(task)
+                    return
+                }
+
+                inFlight++
+            }
+
+            start(task)
+        }
+
+        private fun start(task: (() -> Unit) -> Unit) {
+            var isDone = false
+            task {
+                if (!isDone) {
+                    isDone = true
+                    onTaskDone()
+                }
+            }
+        }
+
+        private fun onTaskDone() {
+            val next = synchronized(this) {
+                val next = waiting.poll()
+                if (next == null) {
+                    inFlight--
+                }
+
+                next
+            }
+
+            next?.let { start(it) }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.crashops.sdk.service
+
+import android.content.Context
+import com.crashops.sdk.communication.Reachability
+import com.crashops.sdk.configuration.Configurations
+import com.crashops.sdk.util.Constants
+import com.crashops.sdk.util.DeviceInfoFetcher
+import com.crashops.sdk.util.SdkLogger
+import com.crashops.sdk.util.Utils
+
+/**
+ * Decides which payloads may leave the device right now.
+ *
+ * Fatal crashes are sent on any network. Bulky payloads (non-fatal errors and screen traces) are held
+ * until the network is unmetered or the device is charging, and everything sent over a metered network
+ * is charged against a daily byte budget.
+ *
+ * A report's screen traces are never stripped from it: a report whose traces are held waits with them, even a fatal crash.
+ */
+class UploadPolicy {
+    enum class Payload {
+        FatalCrash, NonFatalError, ScreenTraces
+    }
+
+    class Conditions(val networkStatus: Reachability.NetworkStatus, val isMetered: Boolean, val isCharging: Boolean) {
+        override fun toString(): String {
+            return "{network: $networkStatus, metered: $isMetered, charging: $isCharging}"
+        }
+    }
+
+    companion object {
+        @JvmStatic
+        val instance: UploadPolicy = UploadPolicy()
+
+        private val TAG: String = UploadPolicy::class.java.simpleName
+    }
+
+    fun currentConditions(context: Context): Conditions {
+        val networkStatus = Reachability.getReachabilityStatus(context)
+        val isMetered = networkStatus == Reachability.NetworkStatus.Cellular || Reachability.isActiveNetworkMetered(context)
+
+        return Conditions(networkStatus, isMetered, DeviceInfoFetcher.isCharging())
+    }
+
+    /**
+     * @param reservedBytes What was already admitted to the pass, it isn't charged (see [onBytesSent]) until it's sent.
+     */
+    fun allows(context: Context, payload: Payload, bytes: Long, conditions: Conditions, reservedBytes: Long = 0): Boolean {
+        if (payload == Payload.FatalCrash) return true
+        if (!conditions.isMetered) return true
+        if (!conditions.isCharging) return false
+
+        val isAllowed = remainingCellularBytes(context) - reservedBytes >= bytes
+        if (!isAllowed) {
+            SdkLogger.log(TAG, "holding $payload ($bytes bytes), the daily cellular budget is spent")
+        }
+
+        return isAllowed
+    }
+
+    /**
+     * Charges the sent bytes against today's budget, relevant only when they went over a metered network.
+     */
+    fun onBytesSent(context: Context, bytes: Long, conditions: Conditions) {
+        if (!conditions.isMetered || bytes <= 0) return
+
+        synchronized(this) {
+            val sentToday = cellularBytesSentToday(context)
+            preferences(context).edit()
+                    .putLong(Constants.Keys.CellularBytesDay, today())
+                    .putLong(Constants.Keys.CellularBytesSent, sentToday + bytes)
+                    .apply()
+        }
+    }
+
+    fun remainingCellularBytes(context: Context): Long {
+        return Configurations.dailyCellularBytesBudget() - cellularBytesSentToday(context)
+    }
+
+    private fun cellularBytesSentToday(context: Context): Long {
+        val preferences = preferences(context)
+        if (preferences.getLong(Constants.Keys.CellularBytesDay, -1) != today()) return 0
+
+        return preferences.getLong(Constants.Keys.CellularBytesSent, 0)
+    }
+
+    private fun today(): Long {
+        return Utils.now() / Constants.ONE_DAY_MILLISECONDS
+    }
+
+    private fun preferences(context: Context) =
+            context.getSharedPreferences(Constants.Keys.LogsPersistenceFileName, Context.MODE_PRIVATE)
+}
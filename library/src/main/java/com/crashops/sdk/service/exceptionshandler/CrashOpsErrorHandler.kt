@@ -43,6 +43,8 @@ class CrashOpsErrorHandler private constructor() : Thread.UncaughtExceptionHandl
 
     private var onCrashListener: OnCrashListener? = null
 
+    private val random = Random()
+
     private var rootHandler: Thread.UncaughtExceptionHandler? = null
     set(value) {
         if (value != instance) {
@@ -81,14 +83,25 @@ class CrashOpsErrorHandler private constructor() : Thread.UncaughtExceptionHandl
             SdkLogger.log(TAG, "Exception caught by CrashOps! Details:")
             SdkLogger.error(TAG, throwable)
 
+            var crashLogFileName: String? = null
             try {
                 val time = Utils.now()
-                val crashLog = LogGenerator.generateLog(thread, throwable, Bundle().withBoolean(Constants.Keys.Json.IS_FATAL, true), time)
-                Repository.instance.storeCrashLog(crashLog, time)
+                val isSessionHeaderStored = Repository.instance.storeSessionHeaderIfNeeded { LogGenerator.generateSessionHeader() }
+                val crashLog = LogGenerator.generateLog(thread, throwable, Bundle().withBoolean(Constants.Keys.Json.IS_FATAL, true), time, !isSessionHeaderStored)
+                crashLogFileName = Repository.instance.storeCrashLog(crashLog, time)
             } catch (e: Throwable) {
                 // Crashed while to generated crash log file
                 SdkLogger.error(TAG, e)
             }
+
+            try {
+                Repository.instance.tracer?.onError(true)
+                // The process is about to die with the latest screen snapshots in memory
+                Repository.instance.tracer?.flush()
+                crashLogFileName?.let { storeWireframeIfNeeded(it) }
+            } catch (e: Throwable) {
+                SdkLogger.error(TAG, e)
+            }
         }
 
         reportToHostApp(throwable)
@@ -97,6 +110,17 @@ class CrashOpsErrorHandler private constructor() : Thread.UncaughtExceptionHandl
         isHandlingException.set(false)
     }
 
+    /**
+     * Stores the latest snapshot (the one the tracer just captured or updated) as the log's wireframe.
+     */
+    private fun storeWireframeIfNeeded(logFileName: String) {
+        if (!Configurations.isAttachingWireframes()) return
+
+        Repository.instance.tracer?.latestSnapshot()?.let {
+            Repository.instance.storeWireframe(it, logFileName)
+        }
+    }
+
     private fun reportToHostApp(throwable: Throwable) {
         onCrashListener?.onCrash(throwable)
 
@@ -162,6 +186,11 @@ class CrashOpsErrorHandler private constructor() : Thread.UncaughtExceptionHandl
     }
 
     fun onError(title: String, errorDetails: Bundle, errorStackTrace: Array<StackTraceElement>) {
+        if (random.nextInt(100) >= Configurations.errorSamplingPercent()) {
+            SdkLogger.log(TAG, "error '$title' was sampled out")
+            return
+        }
+
         val time = Utils.now()
 
         val errorThrowable = ThrowableWithExtra()
@@ -171,8 +200,21 @@ class CrashOpsErrorHandler private constructor() : Thread.UncaughtExceptionHandl
                 .withString(Constants.Keys.Json.ERROR_TITLE, title)
                 .withInnerBundle(Constants.Keys.Json.ERROR_DETAILS, errorDetails)
 
-        val errorLog = LogGenerator.generateLog(Thread.currentThread(), errorThrowable, extra, time)
-        Repository.instance.storeErrorLog(errorLog)
+        try {
+            Repository.instance.tracer?.onError(false)
+        } catch (e: Throwable) {
+            SdkLogger.error(TAG, e)
+        }
+
+        val isSessionHeaderStored = Repository.instance.storeSessionHeaderIfNeeded { LogGenerator.generateSessionHeader() }
+        val errorLog = LogGenerator.generateLog(Thread.currentThread(), errorThrowable, extra, time, !isSessionHeaderStored)
+        Repository.instance.storeErrorLog(errorLog)?.let { errorLogFileName ->
+            try {
+                storeWireframeIfNeeded(errorLogFileName)
+            } catch (e: Throwable) {
+                SdkLogger.error(TAG, e)
+            }
+        }
         LogsHistoryWorker.runNow(COHostApplication.shared(), callback = object: Utils.Callback<Boolean?> {
             override fun onCallback(result: Boolean?) {
                 // did finish...
@@ -224,8 +266,17 @@ private fun Bundle.toMap(): Map<String, Any> {
 
 class LogGenerator {
     companion object {
-        fun generateLog(originThread: Thread, throwable: Throwable, extra: Bundle? = null, time: Long? = null): String {
-            val allStackTraces = Thread.getAllStackTraces().entries
+        /**
+         * @param isSelfContained Whether the session header's details are embedded in the log (as in the v1 schema),
+         * needed when the header couldn't be stored. Such a log is uploaded as it is, see `SessionHeaders.prepare`.
+         */
+        fun generateLog(originThread: Thread, throwable: Throwable, extra: Bundle? = null, time: Long? = null, isSelfContained: Boolean = false): String {
+            val isFatal = extra?.getBoolean(Constants.Keys.Json.IS_FATAL) ?: false
+            val allStackTraces = if (Configurations.shouldDumpAllThreads(isFatal)) {
+                Thread.getAllStackTraces().entries
+            } else {
+                setOf<Map.Entry<Thread, Array<StackTraceElement>>>()
+            }
 
             val logJsonObject = JSONObject()
             
@@ -258,17 +309,15 @@ class LogGenerator {
 
             logJsonObject.put(Constants.Keys.Json.TIMESTAMP, now)
             logJsonObject.put(Constants.Keys.Json.LOCAL_TIME, Strings.timestamp(now,"yyyy_MM_dd_HH_mm_ssZ"))
-            logJsonObject.put(Constants.Keys.Json.HOST_APP_DETAILS, JSONObject(Repository.instance.hostAppDetails.toMap()))
 
+            // The device, host app and SDK details are stored once per session, see `generateSessionHeader`
             logJsonObject.put(Constants.Keys.Json.SESSION_ID, CrashOps.getInstance().sessionId)
-            var deviceInfo = CrashOps.getInstance().deviceInfo
-            if (deviceInfo.isEmpty()) {
-                deviceInfo = DeviceInfoFetcher.getDeviceInfo()
+            if (isSelfContained) {
+                val sessionHeader = sessionHeaderJson()
+                sessionHeader.keys().forEach { key ->
+                    logJsonObject.put(key, sessionHeader.get(key))
+                }
             }
-
-            logJsonObject.put(Constants.Keys.Json.DEVICE_ID, Repository.instance.deviceId())
-            logJsonObject.put(Constants.Keys.Json.SDK_VERSION, CrashOps.sdkVersion)
-            logJsonObject.put(Constants.Keys.Json.DEVICE_INFO, JSONObject(deviceInfo))
             logJsonObject.put(Constants.Keys.Json.METADATA, JSONObject(CrashOps.getInstance().appMetadata().toMap()))
             logJsonObject.put(Constants.Keys.Json.ORIGIN_THREAD, "${originThread.name} (${originThread.id})")
 
@@ -296,6 +345,28 @@ class LogGenerator {
 
             return logJsonObject.toString()
         }
+
+        /**
+         * The details that don't change during a session, shared by all of the session's logs.
+         */
+        fun generateSessionHeader(): String {
+            return sessionHeaderJson().toString()
+        }
+
+        private fun sessionHeaderJson(): JSONObject {
+            var deviceInfo = CrashOps.getInstance().deviceInfo
+            if (deviceInfo.isEmpty()) {
+                deviceInfo = DeviceInfoFetcher.getDeviceInfo()
+            }
+
+            return JSONObject()
+                    .put(Constants.Keys.Json.SESSION_ID, CrashOps.getInstance().sessionId)
+                    .put(Constants.Keys.Json.DEVICE_PLATFORM, Constants.Keys.Json.DEVICE_PLATFORM_ANDROID)
+                    .put(Constants.Keys.Json.DEVICE_ID, Repository.instance.deviceId())
+                    .put(Constants.Keys.Json.SDK_VERSION, CrashOps.sdkVersion)
+                    .put(Constants.Keys.Json.HOST_APP_DETAILS, JSONObject(Repository.instance.hostAppDetails.toMap()))
+                    .put(Constants.Keys.Json.DEVICE_INFO, JSONObject(deviceInfo))
+        }
     }
 }
 
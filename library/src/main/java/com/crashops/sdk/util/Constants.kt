@@ -5,6 +5,7 @@ class Constants {
         const val ONE_SECOND_MILLISECONDS: Long = 1000
         const val ONE_MINUTE_MILLISECONDS: Long = ONE_SECOND_MILLISECONDS * 60
         const val ONE_HOUR_MILLISECONDS: Long = ONE_MINUTE_MILLISECONDS * 60
+        const val ONE_DAY_MILLISECONDS: Long = ONE_HOUR_MILLISECONDS * 24
 
         const val DEBUG: String = "DEBUG"
         const val RELEASE: String = "RELEASE"
@@ -17,6 +18,18 @@ class Constants {
         const val GlobalPersistenceFileName = "${Strings.SDK_IDENTIFIER}_preferences"
         const val AppKey = "appKey"
         const val LastServiceCall = "${Strings.SDK_NAME}_lastServiceCall"
+        const val CellularBytesDay = "${Strings.SDK_NAME}_cellularBytesDay"
+        const val CellularBytesSent = "${Strings.SDK_NAME}_cellularBytesSent"
+        const val AcknowledgedPresence = "${Strings.SDK_NAME}_acknowledgedPresence"
+        const val ServerCapabilities = "${Strings.SDK_NAME}_serverCapabilities"
+        const val UploadedSessionHeaders = "${Strings.SDK_NAME}_uploadedSessionHeaders"
+        const val AcknowledgedReports = "${Strings.SDK_NAME}_acknowledgedReports"
+        const val ThroughputEstimates = "${Strings.SDK_NAME}_throughputEstimates"
+        const val CircuitBreakers = "${Strings.SDK_NAME}_circuitBreakers"
+        const val RemoteConfiguration = "${Strings.SDK_NAME}_remoteConfiguration"
+        const val RemoteConfigurationETag = "${Strings.SDK_NAME}_remoteConfigurationETag"
+        const val RemoteConfigurationFetchTime = "${Strings.SDK_NAME}_remoteConfigurationFetchTime"
+        const val RemoteConfigurationFailuresCount = "${Strings.SDK_NAME}_remoteConfigurationFailuresCount"
         const val DeviceId = "${Strings.SDK_NAME}_deviceId"
         const val DeviceDetails = "${Strings.SDK_NAME}_deviceDetails"
 
@@ -28,7 +41,11 @@ class Constants {
         object Json {
             const val LOCAL_TIME = "localTime"
             const val SCREEN_TRACES = "screenTraces"
+            const val SCREEN_TRACES_ENCODING = "screenTracesEncoding"
+            const val PRESENCE = "presence"
+            const val IS_DELTA = "isDelta"
             const val DID_EXPORT_WIREFRAMES = "didExportWireframes"
+            const val WIREFRAME = "wireframe"
             const val DEBUG_ID = "debugId"
             /**
              * DEBUG / RELEASE
@@ -7,6 +7,8 @@ package com.crashops.sdk.util;
 import android.annotation.SuppressLint;
 import android.content.ContentResolver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.res.Resources;
 import android.os.BatteryManager;
 import android.os.Build;
@@ -121,6 +123,21 @@ public class DeviceInfoFetcher {
     return batteryLevel;
   }
 
+  /**
+   * Reads the sticky battery broadcast, no receiver is actually registered.
+   *
+   * @return `true` if the device is plugged to any power source.
+   */
+  public static boolean isCharging() {
+    Intent batteryStatus = CrashOps.getApplicationContext().registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+    if (batteryStatus == null) return false;
+
+    int status = batteryStatus.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+    int plugged = batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0);
+
+    return plugged != 0 || status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
+  }
+
   /**
    * Returns the Android hardware device ID that is unique between the device + user and app
    * signing. This key will change if the app is uninstalled or its data is cleared. Device factory
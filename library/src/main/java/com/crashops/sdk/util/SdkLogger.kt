@@ -6,8 +6,16 @@ import com.crashops.sdk.configuration.Configurations
 class SdkLogger {
 
     companion object {
+        /**
+         * Silences the logger on a plain JVM (unit tests), where neither `android.util.Log` nor the configurations are available.
+         */
+        @JvmStatic
+        @Volatile
+        var isMuted: Boolean = false
+
         @Suppress("FunctionName")
         private fun _log(reporter: String, logMessage: Any?) {
+            if (isMuted) return
             if (Utils.isReleaseVersion) return
             if (!Configurations.isEnabled()) return
 
@@ -33,6 +41,7 @@ class SdkLogger {
 
         @JvmStatic
         fun error(reporter: String, throwable: Throwable) {
+            if (isMuted) return
             if (Utils.isReleaseVersion) return
             if (!Configurations.isEnabled()) return
 
@@ -46,6 +55,7 @@ class SdkLogger {
 
         @JvmStatic
         fun internalError(reporter: String, logMessage: Any?) {
+            if (isMuted) return
             if (Utils.isReleaseVersion) return
             if (!Configurations.isEnabled()) return
 
@@ -56,6 +66,7 @@ class SdkLogger {
 
         @JvmStatic
         fun error(reporter: String, logMessage: Any?) {
+            if (isMuted) return
             if (Utils.isReleaseVersion) return
             if (!Configurations.isEnabled()) return
 
@@ -72,6 +83,7 @@ class SdkLogger {
 
         @JvmStatic
         fun error(tag: String, errorMessage: String, throwable: Throwable) {
+            if (isMuted) return
             if (Utils.isReleaseVersion) return
             if (!Configurations.isEnabled()) return
 
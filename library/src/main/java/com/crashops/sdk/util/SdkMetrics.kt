@@ -0,0 +1,39 @@
+package com.crashops.sdk.util
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * The SDK's own counters (in memory, per process), they tell what the SDK costs its host.
+ */
+class SdkMetrics private constructor() {
+    enum class Counter {
+        /**
+         * Request bodies that were compressed, before and after their compression.
+         */
+        RequestBytesBeforeCompression,
+        RequestBytesAfterCompression
+    }
+
+    companion object {
+        @JvmStatic
+        val instance: SdkMetrics = SdkMetrics()
+    }
+
+    private val counters: Array<AtomicLong> = Array(Counter.values().size) { AtomicLong() }
+
+    fun add(counter: Counter, delta: Long) {
+        counters[counter.ordinal].addAndGet(delta)
+    }
+
+    fun value(counter: Counter): Long {
+        return counters[counter.ordinal].get()
+    }
+
+    fun snapshot(): Map<String, Long> {
+        return Counter.values().associate { it.name to value(it) }
+    }
+
+    override fun toString(): String {
+        return snapshot().toString()
+    }
+}
@@ -4,9 +4,12 @@ import android.os.Handler;
 import android.os.Looper;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A helper class that syncs all callbacks into one callback.
+ * Holders may be released from any thread.
  *
  * Created by CrashOps on 01/01/2020.
  */
@@ -15,8 +18,8 @@ public class Synchronizer<T> {
         void done(ArrayList<T> extra);
     }
 
-    private boolean hasBeenCanceled;
-    private int holdersCount = 0;
+    private volatile boolean hasBeenCanceled;
+    private final AtomicInteger holdersCount = new AtomicInteger(0);
     private final SynchronizerCallback<T> futureTask;
     private ArrayList<T> allHoldersResults;
     private final Handler handler;
@@ -29,7 +32,7 @@ public class Synchronizer<T> {
     }
 
     public Holder createHolder() {
-        holdersCount++;
+        holdersCount.incrementAndGet();
 
         return new Holder();
     }
@@ -44,7 +47,7 @@ public class Synchronizer<T> {
     }
 
     public boolean isWaiting() {
-        return holdersCount > 0;
+        return holdersCount.get() > 0;
     }
 
     public void cancel() {
@@ -52,19 +55,21 @@ public class Synchronizer<T> {
     }
 
     public ArrayList<T> getAllHoldersResults() {
-        return allHoldersResults;
+        synchronized (allHoldersResults) {
+            return new ArrayList<>(allHoldersResults);
+        }
     }
 
     public boolean didAllDone() {
-        return holdersCount == 0;
+        return holdersCount.get() == 0;
     }
 
     public class Holder {
-        private boolean isReleased;
+        private final AtomicBoolean isReleased;
 
 
         private Holder() {
-            isReleased = false;
+            isReleased = new AtomicBoolean(false);
         }
 
         public void release() {
@@ -78,9 +83,9 @@ public class Synchronizer<T> {
         private void release(final T extra, boolean afterDelay) {
             if (hasBeenCanceled) return;
 
-            if (isReleased) return;
+            if (isReleased.get()) return;
 
-            if (holdersCount == 1 && !afterDelay) {
+            if (holdersCount.get() == 1 && !afterDelay) {
                 handler.postDelayed(new Runnable() {
                     @Override
                     public void run() {
@@ -90,13 +95,16 @@ public class Synchronizer<T> {
                 return;
             }
 
-            isReleased = true;
+            // Released once, even if it's released concurrently from two threads
+            if (!isReleased.compareAndSet(false, true)) return;
 
-            allHoldersResults.add(extra);
-            holdersCount--;
+            synchronized (allHoldersResults) {
+                allHoldersResults.add(extra);
+            }
 
-            if (holdersCount == 0) {
-                futureTask.done(allHoldersResults);
+            // Exactly one release sees the last decrement
+            if (holdersCount.decrementAndGet() == 0) {
+                futureTask.done(getAllHoldersResults());
             }
         }
     }
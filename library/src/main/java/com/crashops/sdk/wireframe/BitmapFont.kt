@@ -0,0 +1,42 @@
+package com.crashops.sdk.wireframe
+
+/**
+ * A 5x7 pixels font for the wireframes' labels: digits, capital letters (lowercase letters are drawn as capitals), '.', '-' and '_'.
+ *
+ * Every glyph is packed in a [Long], 35 bits of 7 rows, the first row and the leftmost column are the most significant bits.
+ */
+internal object BitmapFont {
+    const val GLYPH_WIDTH = 5
+    const val GLYPH_HEIGHT = 7
+
+    /**
+     * Including the space between glyphs.
+     */
+    const val ADVANCE = GLYPH_WIDTH + 1
+
+    private val glyphs: Map<Char, Long> = mapOf(
+            'A' to 0x3A31FC631L, 'B' to 0x7A31F463EL, 'C' to 0x3A308422EL, 'D' to 0x7A318C63EL,
+            'E' to 0x7E10F421FL, 'F' to 0x7E10F4210L, 'G' to 0x3A30BC62FL, 'H' to 0x4631FC631L,
+            'I' to 0x38842108EL, 'J' to 0x1C4210A4CL, 'K' to 0x4654C5251L, 'L' to 0x42108421FL,
+            'M' to 0x4775AC631L, 'N' to 0x4639ACE31L, 'O' to 0x3A318C62EL, 'P' to 0x7A31F4210L,
+            'Q' to 0x3A318D64DL, 'R' to 0x7A31F5251L, 'S' to 0x3E107043EL, 'T' to 0x7C8421084L,
+            'U' to 0x46318C62EL, 'V' to 0x46318C544L, 'W' to 0x4631AD6AAL, 'X' to 0x462A22A31L,
+            'Y' to 0x463151084L, 'Z' to 0x7C222221FL,
+            '0' to 0x3A33AE62EL, '1' to 0x11842108EL, '2' to 0x3A211111FL, '3' to 0x7C441062EL,
+            '4' to 0x08CA97C42L, '5' to 0x7E1E0862EL, '6' to 0x1910F462EL, '7' to 0x7C2222108L,
+            '8' to 0x3A317462EL, '9' to 0x3A317844CL,
+            '_' to 0x00000001FL, '.' to 0x00000018CL, '-' to 0x0000F8000L
+    )
+
+    /**
+     * @return `0` (a blank glyph) for unsupported characters.
+     */
+    fun glyphOf(char: Char): Long {
+        return glyphs[char.toUpperCase()] ?: 0L
+    }
+
+    fun isPixelSet(glyph: Long, column: Int, row: Int): Boolean {
+        val bit = (GLYPH_HEIGHT - 1 - row) * GLYPH_WIDTH + (GLYPH_WIDTH - 1 - column)
+        return (glyph ushr bit) and 1L == 1L
+    }
+}
@@ -0,0 +1,68 @@
+package com.crashops.sdk.wireframe
+
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+
+/**
+ * Encodes 8-bit grayscale pixels as a PNG, with no dependency on Android's or AWT's imaging.
+ */
+internal object PngEncoder {
+    private val SIGNATURE = byteArrayOf(0x89.toByte(), 'P'.toByte(), 'N'.toByte(), 'G'.toByte(), 0x0D, 0x0A, 0x1A, 0x0A)
+
+    private const val BIT_DEPTH = 8
+    private const val COLOR_TYPE_GRAYSCALE = 0
+    private const val FILTER_NONE = 0
+
+    /**
+     * @param pixels Row after row, `width * height` bytes.
+     */
+    fun encode(pixels: ByteArray, width: Int, height: Int): ByteArray {
+        val header = ByteArrayOutputStream(13)
+        DataOutputStream(header).apply {
+            writeInt(width)
+            writeInt(height)
+            writeByte(BIT_DEPTH)
+            writeByte(COLOR_TYPE_GRAYSCALE)
+            writeByte(0) // Compression: deflate
+            writeByte(0) // Filters: adaptive
+            writeByte(0) // No interlace
+        }
+
+        // Wireframes are mostly flat areas, the fastest level compresses them well
+        val deflater = Deflater(Deflater.BEST_SPEED)
+        val data = ByteArrayOutputStream(pixels.size / 8)
+        try {
+            DeflaterOutputStream(data, deflater, 8 * 1024).use {
+                for (row in 0 until height) {
+                    it.write(FILTER_NONE)
+                    it.write(pixels, row * width, width)
+                }
+            }
+        } finally {
+            deflater.end()
+        }
+
+        val png = ByteArrayOutputStream(SIGNATURE.size + data.size() + 3 * 12 + 13)
+        png.write(SIGNATURE)
+        writeChunk(png, "IHDR", header.toByteArray())
+        writeChunk(png, "IDAT", data.toByteArray())
+        writeChunk(png, "IEND", ByteArray(0))
+        return png.toByteArray()
+    }
+
+    private fun writeChunk(png: ByteArrayOutputStream, type: String, data: ByteArray) {
+        val typeBytes = type.toByteArray(Charsets.US_ASCII)
+        val crc = CRC32()
+        crc.update(typeBytes)
+        crc.update(data)
+
+        val output = DataOutputStream(png)
+        output.writeInt(data.size)
+        output.write(typeBytes)
+        output.write(data)
+        output.writeInt(crc.value.toInt())
+    }
+}
@@ -0,0 +1,136 @@
+package com.crashops.sdk.wireframe
+
+import com.crashops.sdk.data.model.ActivityDetails
+import com.crashops.sdk.data.model.ViewDetails
+import java.util.*
+
+/**
+ * Renders a screen trace as a grayscale PNG wireframe: every view is a box (shaded darker the deeper it is)
+ * and the leaves are labeled with their class names.
+ *
+ * It uses plain JVM code only, so it runs on the device (see `Repository.storeWireframe`) as well as on a desktop
+ * (see `WireframeCli` in the unit tests' sources). The screen is scaled down to fit [maxWidth] x [maxHeight].
+ */
+class WireframeRenderer @JvmOverloads constructor(
+        private val maxWidth: Int = 360,
+        private val maxHeight: Int = 1280
+) {
+    companion object {
+        private const val BACKGROUND: Byte = 0xFF.toByte()
+        private const val BORDER: Byte = 0x40
+        private const val LABEL: Byte = 0x00
+
+        private const val LIGHTEST_SHADE = 0xF0
+        private const val SHADE_PER_DEPTH = 0x0C
+        private const val DARKEST_SHADE = 0x90
+
+        private const val LABEL_PADDING = 2
+    }
+
+    /**
+     * @return `null` if the trace has no views.
+     */
+    fun render(activityDetails: ActivityDetails): ByteArray? {
+        return activityDetails.viewDetails?.let { render(it) }
+    }
+
+    fun render(root: ViewDetails): ByteArray {
+        val rootWidth = Math.max(root.dimensions.width, 1)
+        val rootHeight = Math.max(root.dimensions.height, 1)
+        val scale = Math.min(Math.min(maxWidth.toFloat() / rootWidth, maxHeight.toFloat() / rootHeight), 1f)
+        val width = Math.max((rootWidth * scale).toInt(), 1)
+        val height = Math.max((rootHeight * scale).toInt(), 1)
+
+        val canvas = Canvas(width, height)
+        Arrays.fill(canvas.pixels, BACKGROUND)
+
+        // Positions are relative to the parents
+        val leaves: ArrayList<Box> = arrayListOf()
+        visit(root, 0f, 0f) { node, left, top ->
+            val box = Box(node.className, (left * scale).toInt(), (top * scale).toInt(),
+                    ((left + node.dimensions.width) * scale).toInt() - 1, ((top + node.dimensions.height) * scale).toInt() - 1)
+            val shade = Math.max(LIGHTEST_SHADE - node.depth * SHADE_PER_DEPTH, DARKEST_SHADE).toByte()
+            canvas.fill(box, shade)
+            canvas.stroke(box, BORDER)
+            if (node.isLeaf) {
+                leaves.add(box)
+            }
+        }
+
+        // Labels go over all the boxes
+        leaves.forEach {
+            canvas.label(it)
+        }
+
+        return PngEncoder.encode(canvas.pixels, width, height)
+    }
+
+    private fun visit(node: ViewDetails, parentLeft: Float, parentTop: Float, action: (ViewDetails, Float, Float) -> Unit) {
+        val left = parentLeft + node.position.x
+        val top = parentTop + node.position.y
+        action(node, left, top)
+        for (child in node.children) {
+            visit(child, left, top, action)
+        }
+    }
+
+    private class Box(val label: String, val left: Int, val top: Int, val right: Int, val bottom: Int)
+
+    private class Canvas(val width: Int, val height: Int) {
+        val pixels = ByteArray(width * height)
+
+        fun fill(box: Box, color: Byte) {
+            fill(box.left, box.top, box.right, box.bottom, color)
+        }
+
+        fun stroke(box: Box, color: Byte) {
+            fill(box.left, box.top, box.right, box.top, color)
+            fill(box.left, box.bottom, box.right, box.bottom, color)
+            fill(box.left, box.top, box.left, box.bottom, color)
+            fill(box.right, box.top, box.right, box.bottom, color)
+        }
+
+        private fun fill(left: Int, top: Int, right: Int, bottom: Int, color: Byte) {
+            val clippedLeft = Math.max(left, 0)
+            val clippedRight = Math.min(right, width - 1)
+            if (clippedLeft > clippedRight) return
+
+            for (y in Math.max(top, 0)..Math.min(bottom, height - 1)) {
+                Arrays.fill(pixels, y * width + clippedLeft, y * width + clippedRight + 1, color)
+            }
+        }
+
+        /**
+         * Draws as many of the label's characters as the box fits.
+         */
+        fun label(box: Box) {
+            val top = box.top + LABEL_PADDING
+            if (box.bottom - LABEL_PADDING - top + 1 < BitmapFont.GLYPH_HEIGHT) return
+
+            val right = box.right - LABEL_PADDING
+            var left = box.left + LABEL_PADDING
+            for (char in box.label) {
+                if (left + BitmapFont.GLYPH_WIDTH - 1 > right) break
+
+                drawGlyph(BitmapFont.glyphOf(char), left, top)
+                left += BitmapFont.ADVANCE
+            }
+        }
+
+        private fun drawGlyph(glyph: Long, left: Int, top: Int) {
+            for (row in 0 until BitmapFont.GLYPH_HEIGHT) {
+                val y = top + row
+                if (y < 0 || y >= height) continue
+
+                for (column in 0 until BitmapFont.GLYPH_WIDTH) {
+                    val x = left + column
+                    if (x < 0 || x >= width) continue
+
+                    if (BitmapFont.isPixelSet(glyph, column, row)) {
+                        pixels[y * width + x] = LABEL
+                    }
+                }
+            }
+        }
+    }
+}
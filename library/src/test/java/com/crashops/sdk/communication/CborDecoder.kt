@@ -0,0 +1,120 @@
+package com.crashops.sdk.communication
+
+import com.google.gson.JsonArray
+import com.google.gson.JsonElement
+import com.google.gson.JsonNull
+import com.google.gson.JsonObject
+import com.google.gson.JsonPrimitive
+import java.io.DataInputStream
+import java.io.EOFException
+import java.io.InputStream
+
+/**
+ * Decodes the subset of CBOR (RFC 7049) that [CborReportCodec] writes back into a JSON tree.
+ */
+class CborDecoder(inputStream: InputStream) {
+    private val input = DataInputStream(inputStream)
+
+    companion object {
+        private const val BREAK = 0xff
+
+        fun decode(bytes: ByteArray): JsonElement {
+            val decoder = CborDecoder(bytes.inputStream())
+            val element = decoder.readItem()
+            check(decoder.input.read() < 0) { "trailing bytes after the top-level item" }
+            return element
+        }
+    }
+
+    fun readItem(): JsonElement {
+        return readItem(readInitialByte())
+    }
+
+    private fun readInitialByte(): Int {
+        val initialByte = input.read()
+        if (initialByte < 0) throw EOFException()
+        return initialByte
+    }
+
+    private fun readItem(initialByte: Int): JsonElement {
+        val majorType = initialByte ushr 5
+        val additionalInfo = initialByte and 0x1f
+
+        return when (majorType) {
+            0 -> JsonPrimitive(readArgument(additionalInfo))
+            1 -> JsonPrimitive(-1 - readArgument(additionalInfo))
+            3 -> JsonPrimitive(readText(additionalInfo))
+            4 -> readArray(additionalInfo)
+            5 -> readMap(additionalInfo)
+            7 -> readSimple(initialByte)
+            else -> throw IllegalStateException("unexpected major type $majorType")
+        }
+    }
+
+    private fun readArgument(additionalInfo: Int): Long {
+        return when (additionalInfo) {
+            in 0..23 -> additionalInfo.toLong()
+            24 -> input.readUnsignedByte().toLong()
+            25 -> input.readUnsignedShort().toLong()
+            26 -> input.readInt().toLong() and 0xffffffffL
+            27 -> input.readLong()
+            else -> throw IllegalStateException("unexpected additional info $additionalInfo")
+        }
+    }
+
+    private fun readText(additionalInfo: Int): String {
+        val bytes = ByteArray(readArgument(additionalInfo).toInt())
+        input.readFully(bytes)
+        return String(bytes, Charsets.UTF_8)
+    }
+
+    private fun readArray(additionalInfo: Int): JsonArray {
+        val array = JsonArray()
+        if (additionalInfo == 31) {
+            while (true) {
+                val initialByte = readInitialByte()
+                if (initialByte == BREAK) break
+                array.add(readItem(initialByte))
+            }
+        } else {
+            repeat(readArgument(additionalInfo).toInt()) {
+                array.add(readItem())
+            }
+        }
+
+        return array
+    }
+
+    private fun readMap(additionalInfo: Int): JsonObject {
+        val map = JsonObject()
+        if (additionalInfo == 31) {
+            while (true) {
+                val initialByte = readInitialByte()
+                if (initialByte == BREAK) break
+                map.add(readKey(initialByte), readItem())
+            }
+        } else {
+            repeat(readArgument(additionalInfo).toInt()) {
+                map.add(readKey(readInitialByte()), readItem())
+            }
+        }
+
+        return map
+    }
+
+    private fun readKey(initialByte: Int): String {
+        check(initialByte ushr 5 == 3) { "map keys must be text" }
+        return readText(initialByte and 0x1f)
+    }
+
+    private fun readSimple(initialByte: Int): JsonElement {
+        return when (initialByte) {
+            0xf4 -> JsonPrimitive(false)
+            0xf5 -> JsonPrimitive(true)
+            0xf6 -> JsonNull.INSTANCE
+            0xfa -> JsonPrimitive(java.lang.Float.intBitsToFloat(input.readInt()).toDouble())
+            0xfb -> JsonPrimitive(java.lang.Double.longBitsToDouble(input.readLong()))
+            else -> throw IllegalStateException("unexpected simple value $initialByte")
+        }
+    }
+}
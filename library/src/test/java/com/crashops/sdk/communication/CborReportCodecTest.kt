@@ -0,0 +1,125 @@
+package com.crashops.sdk.communication
+
+import com.google.gson.JsonElement
+import com.google.gson.JsonParser
+import okio.Buffer
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import java.io.File
+import java.math.BigDecimal
+
+class CborReportCodecTest {
+    companion object {
+        private val REPORT_FIXTURES = listOf("fatal_crash.json", "fatal_crash_self_contained.json", "error_with_screen_traces.json")
+    }
+
+    @Test
+    fun roundTripsSampleReports() {
+        sampleReports().forEach { report ->
+            assertSameJson(JsonParser().parse(report), CborDecoder.decode(encode(report)))
+        }
+    }
+
+    @Test
+    fun roundTripsEdgeValues() {
+        val json = """{"empty":{},"none":[],"nothing":null,"yes":true,"no":false,
+            |"small":23,"byte":24,"short":65535,"int":4294967295,"long":9223372036854775807,
+            |"negative":-1,"minLong":-9223372036854775808,"float":1.5,"double":0.1,"exponent":1e2,
+            |"text":"","unicode":"שלום é 😀","nested":[[[{"a":[1,-2,3.25]}]]]}""".trimMargin()
+
+        assertSameJson(JsonParser().parse(json), CborDecoder.decode(encode(json)))
+    }
+
+    @Test
+    fun encodesIntegersInTheirShortestForm() {
+        assertEquals("17", hexOf(encode("23")))
+        assertEquals("1818", hexOf(encode("24")))
+        assertEquals("1903e8", hexOf(encode("1000")))
+        assertEquals("1a000f4240", hexOf(encode("1000000")))
+        assertEquals("1b000000e8d4a51000", hexOf(encode("1000000000000")))
+        assertEquals("20", hexOf(encode("-1")))
+        assertEquals("3863", hexOf(encode("-100")))
+    }
+
+    @Test
+    fun isSmallerThanJson() {
+        sampleReports().forEach { report ->
+            val json = Buffer()
+            JsonReportCodec.encode(report.byteInputStream(), json)
+            val cbor = encode(report)
+
+            assertTrue("CBOR should be smaller than JSON (${cbor.size} vs ${json.size()} bytes)", cbor.size < json.size())
+        }
+    }
+
+    @Test
+    fun reportBodyCountsItsEncodedLength() {
+        val file = File.createTempFile("report", ".log")
+        try {
+            val report = sampleReports().first()
+            file.writeText(report)
+            val body = ReportRequestBody(ReportPayload.from(file)!!, CborReportCodec)
+            assertEquals(-1L, body.contentLength())
+
+            val sink = Buffer()
+            body.writeTo(sink)
+            assertEquals(sink.size(), body.encodedLength)
+            assertEquals(encode(report).size.toLong(), body.encodedLength)
+        } finally {
+            file.delete()
+        }
+    }
+
+    private fun encode(json: String): ByteArray {
+        val buffer = Buffer()
+        CborReportCodec.encode(json.byteInputStream(), buffer)
+        return buffer.readByteArray()
+    }
+
+    private fun hexOf(bytes: ByteArray): String {
+        return bytes.joinToString("") { String.format("%02x", it) }
+    }
+
+    /**
+     * Numbers are compared by value, CBOR doesn't keep their textual form.
+     */
+    private fun assertSameJson(expected: JsonElement, actual: JsonElement, path: String = "$") {
+        when {
+            expected.isJsonObject -> {
+                assertTrue("$path should be an object", actual.isJsonObject)
+                val expectedEntries = expected.asJsonObject.entrySet().map { it.key }
+                val actualEntries = actual.asJsonObject.entrySet().map { it.key }
+                assertEquals("$path keys", expectedEntries, actualEntries)
+                expected.asJsonObject.entrySet().forEach { (key, value) ->
+                    assertSameJson(value, actual.asJsonObject.get(key), "$path.$key")
+                }
+            }
+            expected.isJsonArray -> {
+                assertTrue("$path should be an array", actual.isJsonArray)
+                assertEquals("$path size", expected.asJsonArray.size(), actual.asJsonArray.size())
+                for (index in 0 until expected.asJsonArray.size()) {
+                    assertSameJson(expected.asJsonArray[index], actual.asJsonArray[index], "$path[$index]")
+                }
+            }
+            expected.isJsonNull -> assertTrue("$path should be null", actual.isJsonNull)
+            expected.asJsonPrimitive.isNumber -> {
+                if (!actual.isJsonPrimitive || !actual.asJsonPrimitive.isNumber) fail("$path should be a number")
+                assertEquals("$path", 0, BigDecimal(expected.asString).compareTo(BigDecimal(actual.asString)))
+            }
+            else -> assertEquals(path, expected, actual)
+        }
+    }
+
+    /**
+     * Stored reports (anonymized): a fatal crash with all threads, a self-contained one (with its session header),
+     * and a non-fatal error with the screen traces that are spliced in at upload time.
+     */
+    private fun sampleReports(): List<String> {
+        return REPORT_FIXTURES.map { name ->
+            val stream = javaClass.getResourceAsStream("/reports/$name") ?: throw AssertionError("missing fixture: $name")
+            stream.bufferedReader().use { it.readText() }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.crashops.sdk.communication
+
+import com.crashops.sdk.service.SessionHeaders
+import com.crashops.sdk.util.SdkLogger
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.zip.GZIPInputStream
+
+class CommunicatorTest {
+    companion object {
+        private const val TIMEOUT_SECONDS = 10L
+
+        private const val REPORT = """{"origin":{"name":"java.lang.IllegalStateException","stackTrace":["a.b.C.d(C.kt:1)"]},"isFatal":true,"timestamp":1700000000000}"""
+    }
+
+    private lateinit var server: LoopbackTransport
+    private lateinit var environment: TestEnvironment
+    private lateinit var communicator: Communicator
+    private lateinit var reportFile: File
+
+    @Before
+    fun setUp() {
+        SdkLogger.isMuted = true
+        server = LoopbackTransport()
+        environment = TestEnvironment(server)
+        communicator = Communicator(environment)
+        reportFile = File.createTempFile("report", ".log")
+        reportFile.writeText(REPORT)
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+        reportFile.delete()
+    }
+
+    @Test
+    fun sendsReportsWithTheirHeaders() {
+        val (result, bytesSent) = report("key-1")
+
+        assertEquals(202, result?.first)
+        val received = server.receivedReports.single()
+        assertEquals(REPORT, String(received.body, Charsets.UTF_8))
+        assertEquals("test-app-key", received.headers["crashops-application-key"])
+        assertEquals("2", received.headers[Communicator.SchemaHeader])
+        assertEquals("key-1", received.headers[Communicator.IdempotencyKeyHeader])
+        assertNull(received.headers["Content-Encoding"])
+
+        assertEquals(reportFile.length(), bytesSent)
+        assertEquals(listOf(Pair(CircuitBreaker.Endpoint.Reports, 202)), environment.results.toList())
+        assertEquals(reportFile.length(), environment.samples.single().bodyBytes)
+        assertEquals(Reachability.NetworkStatus.WiFi, environment.samples.single().networkStatus)
+    }
+
+    @Test
+    fun gzipsReportsOnceTheServerAdvertisedIt() {
+        server.capabilities = setOf(ServerCapabilities.GZIP, ServerCapabilities.CBOR)
+        environment.compressionThresholdBytes = 0
+
+        // The first response advertises the capabilities
+        report("key-1")
+        assertTrue(environment.supports(ServerCapabilities.GZIP))
+
+        val (result, bytesSent) = report("key-2")
+        assertEquals(202, result?.first)
+        val received = server.receivedReports.last()
+        assertEquals(GzipRequestBody.CONTENT_ENCODING, received.headers["Content-Encoding"])
+        assertEquals(REPORT, GZIPInputStream(received.body.inputStream()).readBytes().toString(Charsets.UTF_8))
+        assertEquals(received.body.size.toLong(), bytesSent)
+    }
+
+    @Test
+    fun chargesTheEncodedLengthOfCborReports() {
+        environment.reportCodec = CborReportCodec
+
+        val (_, bytesSent) = report("key-1")
+
+        val received = server.receivedReports.single()
+        assertEquals(received.body.size.toLong(), bytesSent)
+        assertTrue(bytesSent < reportFile.length())
+    }
+
+    @Test
+    fun recordsOutagesWithTheCircuitBreaker() {
+        server.reportsResponseCode = 503
+
+        val (result, _) = report("key-1")
+
+        assertEquals(503, result?.first)
+        assertNull(result?.second)
+        assertEquals(listOf(Pair(CircuitBreaker.Endpoint.Reports, 503)), environment.results.toList())
+    }
+
+    @Test
+    fun skipsRequestsWhileTheCircuitIsOpen() {
+        environment.openCircuits.add(CircuitBreaker.Endpoint.Reports)
+
+        val (result, bytesSent) = report("key-1")
+
+        assertNull(result)
+        assertEquals(0L, bytesSent)
+        assertTrue(server.receivedRequests.isEmpty())
+    }
+
+    @Test
+    fun skipsRequestsWithoutAnAppKey() {
+        environment.appKey = null
+
+        val (result, _) = report("key-1")
+
+        assertNull(result)
+        assertTrue(server.receivedRequests.isEmpty())
+    }
+
+    @Test
+    fun revalidatesTheConfigurationWithItsETag() {
+        server.configuration = """{"co_screen_traces_ring_capacity":10}"""
+
+        val (firstResult, eTag) = fetchConfiguration(null)
+        assertEquals(200, firstResult?.first)
+        assertEquals(server.configuration, firstResult?.second)
+        assertNotNull(eTag)
+
+        val (secondResult, _) = fetchConfiguration(eTag)
+        assertEquals(304, secondResult?.first)
+        assertEquals(CircuitBreaker.Endpoint.Config, environment.results.last().first)
+    }
+
+    private fun report(idempotencyKey: String): Pair<Pair<*, *>?, Long> {
+        val latch = CountDownLatch(1)
+        var response: Pair<*, *>? = null
+        var bytesSent = -1L
+        communicator.report(ReportPayload.from(reportFile)!!, SessionHeaders.SCHEMA_V2, idempotencyKey) { result, sent ->
+            response = result as? Pair<*, *>
+            bytesSent = sent
+            latch.countDown()
+        }
+
+        assertTrue("no callback", latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        return Pair(response, bytesSent)
+    }
+
+    private fun fetchConfiguration(eTag: String?): Pair<Pair<*, *>?, String?> {
+        val latch = CountDownLatch(1)
+        var response: Pair<*, *>? = null
+        var responseETag: String? = null
+        communicator.fetchConfiguration(eTag) { result, receivedETag ->
+            response = result as? Pair<*, *>
+            responseETag = receivedETag
+            latch.countDown()
+        }
+
+        assertTrue("no callback", latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        return Pair(response, responseETag)
+    }
+}
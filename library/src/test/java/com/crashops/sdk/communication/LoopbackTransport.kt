@@ -0,0 +1,281 @@
+package com.crashops.sdk.communication
+
+import okhttp3.*
+import okio.Buffer
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.util.*
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * An in-process stand-in for the CrashOps server (`/api/reports`, `/api/ping`, `/api/config` and `/api/uploads`), nothing leaves the process.
+ *
+ * Upload behavior and throughput can be exercised on a plain JVM: the link's round-trip time and bandwidth are simulated,
+ * and every received request is recorded. See [CommunicatorTest].
+ */
+class LoopbackTransport @JvmOverloads constructor(
+        /**
+         * Added to every request.
+         */
+        private val roundTripMilliseconds: Long = 0,
+        /**
+         * Request bodies are "uploaded" at this rate, zero means no limit.
+         */
+        private val bytesPerSecond: Long = 0
+) : Transport {
+    class Received(val method: String, val path: String, val headers: Headers, val body: ByteArray) {
+        override fun toString(): String {
+            return "$method $path (${body.size} bytes)"
+        }
+    }
+
+    companion object {
+        const val ReportsPath = "/api/reports"
+        const val PingPath = "/api/ping"
+        const val ConfigPath = "/api/config"
+        const val UploadsPath = "/api/uploads"
+
+        private val CONTENT_RANGE = Regex("bytes (\\d+)-(\\d+)/(\\d+)")
+    }
+
+    /**
+     * A resumable upload, its parts must arrive in order.
+     */
+    class Upload(val id: String, val length: Long, val contentType: String?) {
+        val bytes = ByteArrayOutputStream()
+
+        val committedOffset: Long
+            get() = bytes.size().toLong()
+
+        val isComplete: Boolean
+            get() = committedOffset == length
+    }
+
+    private val executor: ExecutorService = Executors.newSingleThreadExecutor()
+
+    private val received: ArrayList<Received> = arrayListOf()
+    private val idempotencyKeys: HashSet<String> = hashSetOf()
+
+    /**
+     * The response code of every report, e.g. 503 to simulate an outage.
+     */
+    @Volatile
+    var reportsResponseCode: Int = 202
+
+    /**
+     * Advertised on every response, see [ServerCapabilities].
+     */
+    @Volatile
+    var capabilities: Set<String> = setOf()
+
+    /**
+     * Served from [ConfigPath] with an `ETag` derived from its content, `null` responds with 404.
+     */
+    @Volatile
+    var configuration: String? = null
+
+    /**
+     * Reports whose idempotency key was already received.
+     */
+    @Volatile
+    var duplicateReportsCount: Int = 0
+        private set
+
+    private val uploads: LinkedHashMap<String, Upload> = linkedMapOf()
+
+    /**
+     * The chance of every `/api/uploads` request to drop its connection: half of the drops lose the request,
+     * the other half lose only the response (after the server has committed the part).
+     */
+    @Volatile
+    var uploadsDropProbability: Double = 0.0
+
+    /**
+     * Makes the drops reproducible.
+     */
+    var random: Random = Random(0)
+
+    /**
+     * The next status of an upload reports the offset it had when it started (like a lagging replica), to cause an offset mismatch.
+     */
+    @Volatile
+    var isUploadStatusStale: Boolean = false
+
+    /**
+     * Drops the connection once, right after this many parts were committed (the last part's response is lost), -1 never.
+     */
+    @Volatile
+    var dropAfterUploadParts: Int = -1
+
+    private var committedPartsCount = 0
+    private var isResponseLost = false
+
+    /**
+     * Dropped connections so far.
+     */
+    @Volatile
+    var droppedRequestsCount: Int = 0
+        private set
+
+    val completedUploads: List<Upload>
+        get() = synchronized(uploads) { uploads.values.filter { it.isComplete } }
+
+    /**
+     * Forgets all the uploads, as if they expired.
+     */
+    fun forgetUploads() {
+        synchronized(uploads) { uploads.clear() }
+    }
+
+    val receivedRequests: List<Received>
+        get() = synchronized(received) { ArrayList(received) }
+
+    val receivedReports: List<Received>
+        get() = receivedRequests.filter { it.path == ReportsPath }
+
+    val receivedBytesCount: Long
+        get() = receivedRequests.fold(0L) { total, request -> total + request.body.size }
+
+    override fun enqueue(request: Request, listener: Transport.Listener) {
+        executor.execute {
+            val sentAt = System.currentTimeMillis()
+            val body = Buffer()
+            try {
+                request.body()?.writeTo(body)
+            } catch (e: IOException) {
+                listener.onFailure(request, e)
+                return@execute
+            }
+            val bodyBytes = body.readByteArray()
+
+            val transferMilliseconds = if (bytesPerSecond > 0) bodyBytes.size * 1000L / bytesPerSecond else 0
+            val delay = roundTripMilliseconds + transferMilliseconds
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay)
+                } catch (e: InterruptedException) {
+                    Thread.currentThread().interrupt()
+                }
+            }
+
+            val path = request.url().encodedPath()
+            val isUpload = path == UploadsPath || path.startsWith("$UploadsPath/")
+            if (isUpload && isDropped()) {
+                listener.onFailure(request, IOException("connection reset (before $path was processed)"))
+                return@execute
+            }
+
+            synchronized(received) {
+                received.add(Received(request.method(), path, request.headers(), bodyBytes))
+            }
+
+            var responseBody = "{}"
+            var eTag: String? = null
+            val code = when (path) {
+                ConfigPath -> {
+                    configuration?.let { document ->
+                        eTag = "\"${Integer.toHexString(document.hashCode())}\""
+                        if (request.header("If-None-Match") == eTag) {
+                            304
+                        } else {
+                            responseBody = document
+                            200
+                        }
+                    } ?: 404
+                }
+                ReportsPath -> {
+                    request.header(Communicator.IdempotencyKeyHeader)?.let { key ->
+                        val isDuplicate = synchronized(idempotencyKeys) { !idempotencyKeys.add(key) }
+                        if (isDuplicate) duplicateReportsCount++
+                    }
+                    reportsResponseCode
+                }
+                PingPath -> 200
+                else -> if (isUpload) {
+                    val (uploadCode, uploadResponseBody) = onUploadRequest(request, path, bodyBytes)
+                    responseBody = uploadResponseBody
+                    uploadCode
+                } else {
+                    404
+                }
+            }
+
+            val isResponseLost = synchronized(uploads) {
+                val isLost = this.isResponseLost
+                this.isResponseLost = false
+                isLost
+            }
+            if (isUpload && (isResponseLost || isDropped())) {
+                listener.onFailure(request, IOException("connection reset (after $path was processed)"))
+                return@execute
+            }
+
+            val responseBuilder = Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(code)
+                    .message(if (code < 400) "OK" else "Error")
+                    .body(ResponseBody.create(MediaType.parse("application/json; charset=utf-8"), responseBody))
+                    .sentRequestAtMillis(sentAt)
+                    .receivedResponseAtMillis(System.currentTimeMillis())
+
+            eTag?.let {
+                responseBuilder.header("ETag", it)
+            }
+
+            if (capabilities.isNotEmpty()) {
+                responseBuilder.header(ServerCapabilities.HEADER, capabilities.joinToString(","))
+            }
+
+            listener.onResponse(request, responseBuilder.build())
+        }
+    }
+
+    private fun isDropped(): Boolean {
+        if (uploadsDropProbability <= 0 || random.nextDouble() >= uploadsDropProbability / 2) return false
+
+        droppedRequestsCount++
+        return true
+    }
+
+    /**
+     * `POST /api/uploads` starts an upload, `POST /api/uploads/<id>` appends a part and `GET /api/uploads/<id>` tells its status.
+     * The last part completes the upload with a 202, like a report.
+     */
+    private fun onUploadRequest(request: Request, path: String, body: ByteArray): Pair<Int, String> {
+        synchronized(uploads) {
+            if (path == UploadsPath) {
+                val length = request.header(Communicator.UploadLengthHeader)?.toLongOrNull() ?: return Pair(400, "{}")
+                val upload = Upload(UUID.randomUUID().toString(), length, request.header(Communicator.UploadTypeHeader))
+                uploads[upload.id] = upload
+                return Pair(201, "{\"uploadId\":\"${upload.id}\"}")
+            }
+
+            val upload = uploads[path.removePrefix("$UploadsPath/")] ?: return Pair(404, "{}")
+            if (request.method() == "GET") {
+                val offset = if (isUploadStatusStale) 0 else upload.committedOffset
+                isUploadStatusStale = false
+                return Pair(if (upload.isComplete) 202 else 200, "{\"offset\":$offset}")
+            }
+
+            val range = request.header("Content-Range")?.let { CONTENT_RANGE.matchEntire(it) } ?: return Pair(400, "{}")
+            val (first, last, total) = range.destructured
+            if (total.toLong() != upload.length || last.toLong() - first.toLong() + 1 != body.size.toLong()) return Pair(400, "{}")
+            if (first.toLong() != upload.committedOffset) return Pair(409, "{\"offset\":${upload.committedOffset}}")
+
+            upload.bytes.write(body)
+            committedPartsCount++
+            if (committedPartsCount == dropAfterUploadParts) {
+                dropAfterUploadParts = -1
+                droppedRequestsCount++
+                isResponseLost = true
+            }
+            return Pair(if (upload.isComplete) 202 else 200, "{\"offset\":${upload.committedOffset}}")
+        }
+    }
+
+    fun shutdown() {
+        executor.shutdown()
+    }
+}
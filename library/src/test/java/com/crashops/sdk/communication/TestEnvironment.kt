@@ -0,0 +1,61 @@
+package com.crashops.sdk.communication
+
+import java.util.*
+
+/**
+ * A [Communicator.Environment] that records what the communicator reports, with no Android or SDK state behind it.
+ */
+class TestEnvironment(override val transport: Transport) : Communicator.Environment {
+    class Sample(val networkStatus: Reachability.NetworkStatus, val bodyBytes: Long, val elapsedMilliseconds: Long)
+
+    @Volatile
+    var appKey: String? = "test-app-key"
+
+    @Volatile
+    var networkStatus: Reachability.NetworkStatus = Reachability.NetworkStatus.WiFi
+
+    /**
+     * Endpoints whose circuit is open.
+     */
+    val openCircuits: MutableSet<CircuitBreaker.Endpoint> = Collections.synchronizedSet(EnumSet.noneOf(CircuitBreaker.Endpoint::class.java))
+
+    /**
+     * The capabilities the server advertised so far.
+     */
+    val capabilities: MutableSet<String> = Collections.synchronizedSet(hashSetOf())
+
+    @Volatile
+    var compressionThresholdBytes: Long = Long.MAX_VALUE
+
+    @Volatile
+    var reportCodec: ReportCodec = JsonReportCodec
+
+    val results: MutableList<Pair<CircuitBreaker.Endpoint, Int?>> = Collections.synchronizedList(arrayListOf())
+    val samples: MutableList<Sample> = Collections.synchronizedList(arrayListOf())
+
+    override fun appKey(): String? = appKey
+
+    override fun networkStatus(): Reachability.NetworkStatus = networkStatus
+
+    override fun isRefusing(endpoint: CircuitBreaker.Endpoint): Boolean = openCircuits.contains(endpoint)
+
+    override fun allowsRequest(endpoint: CircuitBreaker.Endpoint): Boolean = !openCircuits.contains(endpoint)
+
+    override fun onResult(endpoint: CircuitBreaker.Endpoint, httpResponseCode: Int?) {
+        results.add(Pair(endpoint, httpResponseCode))
+    }
+
+    override fun onRequestCompleted(networkStatus: Reachability.NetworkStatus, bodyBytes: Long, elapsedMilliseconds: Long) {
+        samples.add(Sample(networkStatus, bodyBytes, elapsedMilliseconds))
+    }
+
+    override fun supports(capability: String): Boolean = capabilities.contains(capability)
+
+    override fun onCapabilitiesAdvertised(headerValue: String) {
+        headerValue.split(",").map { it.trim() }.filter { it.isNotEmpty() }.forEach { capabilities.add(it) }
+    }
+
+    override fun compressionThresholdBytes(): Long = compressionThresholdBytes
+
+    override fun reportCodec(): ReportCodec = reportCodec
+}
@@ -0,0 +1,51 @@
+package com.crashops.sdk.data.model
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Test
+import java.util.*
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class ClassNamesTest {
+    @Test
+    fun sharesOneInstancePerName() {
+        val name = ClassNames.instance.nameOf(ClassNamesTest::class.java)
+
+        assertEquals("ClassNamesTest", name)
+        assertSame(name, ClassNames.instance.nameOf(ClassNamesTest::class.java))
+        assertSame(name, ClassNames.instance.intern(String("ClassNamesTest".toCharArray())))
+    }
+
+    @Test
+    fun mapsIdsBackToNames() {
+        val id = ClassNames.instance.idOf("AppCompatTextView")
+
+        assertEquals(id, ClassNames.instance.idOf("AppCompatTextView"))
+        assertSame(ClassNames.instance.intern("AppCompatTextView"), ClassNames.instance.nameOf(id))
+        assertEquals(null, ClassNames.instance.nameOf(Int.MAX_VALUE))
+    }
+
+    @Test
+    fun givesConcurrentCallersTheSameIds() {
+        val names = (0 until 200).map { "ConcurrentView$it" }
+        val threadsCount = 4
+        val executor = Executors.newFixedThreadPool(threadsCount)
+        val start = CountDownLatch(1)
+        val idsByThread = (0 until threadsCount).map { threadIndex ->
+            executor.submit<Map<String, Int>> {
+                start.await()
+                // Each thread interns the names in another order
+                names.shuffled(Random(threadIndex.toLong())).associate { it to ClassNames.instance.idOf(it) }
+            }
+        }
+
+        start.countDown()
+        val ids = idsByThread.map { it.get(10, TimeUnit.SECONDS) }
+        executor.shutdown()
+
+        ids.forEach { assertEquals(ids.first(), it) }
+        ids.first().forEach { (name, id) -> assertEquals(name, ClassNames.instance.nameOf(id)) }
+    }
+}
@@ -0,0 +1,71 @@
+package com.crashops.sdk.data.model
+
+import com.google.gson.JsonParser
+import org.json.JSONObject
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class CompactViewTreeTest {
+    @Test
+    fun serializesToTheSameJson() {
+        val root = sampleTree()
+
+        val compactTree = root.toCompactTree()
+
+        assertEquals(root.nodesCount(), compactTree.size)
+        assertSameJson(root.toJson(), compactTree.toJson())
+    }
+
+    @Test
+    fun inflatesBackToTheSameTree() {
+        val root = sampleTree()
+
+        val inflated = root.toCompactTree().toViewDetails()
+
+        assertEquals(root, inflated)
+        assertTrue(root.hasSameStructure(inflated))
+    }
+
+    @Test
+    fun storesTheInternedClassIds() {
+        val compactTree = sampleTree().toCompactTree()
+
+        compactTree.forEachNode { index ->
+            assertEquals(ClassNames.instance.idOf(compactTree.className(index)), compactTree.classId(index))
+        }
+        assertEquals(CompactViewTree.NO_NODE, compactTree.parentIndex(0))
+        assertEquals(0, compactTree.parentIndex(compactTree.firstChildIndex(0)))
+    }
+
+    @Test
+    fun compactedSnapshotsKeepTheirJson() {
+        val activityDetails = ActivityDetails("MainActivity", "com.example.shop", 1_700_000_000_000L, sampleTree(), false)
+        val json = activityDetails.toJson()
+
+        activityDetails.compact()
+
+        assertSameJson(json, activityDetails.toJson())
+        assertEquals(sampleTree(), activityDetails.viewDetails)
+    }
+
+    /**
+     * Regardless of the order of the keys.
+     */
+    private fun assertSameJson(expected: JSONObject, actual: JSONObject) {
+        assertEquals(JsonParser().parse(expected.toString()), JsonParser().parse(actual.toString()))
+    }
+
+    private fun sampleTree(): ViewDetails {
+        fun leaf(className: String, x: Float, depth: Int) = ViewDetails(className, Position(x, 10.5f), Size(100, 40), arrayListOf(), depth)
+
+        val list = ViewDetails("LinearLayout", Position(0f, 100f), Size(1080, 600),
+                arrayListOf(leaf("TextView", 0f, 2), leaf("AppCompatButton", 120f, 2), leaf("TextView", 240f, 2)), 1)
+        val toolbar = ViewDetails("Toolbar", Position(0f, 0f), Size(1080, 100), arrayListOf(leaf("TextView", 16f, 2)), 1)
+        return ViewDetails("DecorView", Position(0f, 0f), Size(1080, 1920), arrayListOf(toolbar, list), 0)
+    }
+
+    private fun ViewDetails.nodesCount(): Int {
+        return 1 + children.sumBy { it.nodesCount() }
+    }
+}
@@ -0,0 +1,240 @@
+package com.crashops.sdk.data.model
+
+import com.google.gson.JsonParser
+import org.json.JSONArray
+import org.json.JSONObject
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+
+/**
+ * Decodes the traces the way the server should (see [TraceDeltaEncoder]) and expects the very snapshots that were encoded.
+ */
+class TraceDeltaEncoderTest {
+    @Test
+    fun encodesAnAddedView() {
+        val base = snapshot(1L, items(6))
+        val next = snapshot(2L, items(7))
+
+        val encoded = encodeAndVerify(base, next)
+
+        assertEquals(listOf("add 1/6"), operationsOf(encoded.getJSONObject(1)))
+    }
+
+    @Test
+    fun encodesRemovedViewsFromTheHighestIndexDown() {
+        val base = snapshot(1L, items(6))
+        val next = snapshot(2L, items(4))
+
+        val encoded = encodeAndVerify(base, next)
+
+        assertEquals(listOf("remove 1/5", "remove 1/4"), operationsOf(encoded.getJSONObject(1)))
+    }
+
+    @Test
+    fun encodesAViewThatChangedItsClass() {
+        val base = snapshot(1L, items(6))
+        val next = snapshot(2L, items(6).apply {
+            set(2, ViewDetails("AppCompatImageView", Position(0f, 200f), Size(1080, 100), arrayListOf(), 2))
+        })
+
+        val encoded = encodeAndVerify(base, next)
+
+        assertEquals(listOf("replace 1/2"), operationsOf(encoded.getJSONObject(1)))
+    }
+
+    @Test
+    fun encodesAMovedView() {
+        val base = snapshot(1L, items(6))
+        val next = snapshot(2L, items(6), titleX = 72f)
+
+        val encoded = encodeAndVerify(base, next)
+
+        assertEquals(listOf("move 0/0"), operationsOf(encoded.getJSONObject(1)))
+    }
+
+    @Test
+    fun chainsTheDeltasOfTheSameActivity() {
+        val traces = listOf(
+                snapshot(1L, items(6)),
+                snapshot(2L, items(7)),
+                snapshot(3L, items(7), titleX = 72f),
+                snapshot(4L, items(5), titleX = 72f, isPartial = true))
+
+        val encoded = encodeAndVerify(*traces.toTypedArray())
+
+        assertFalse(encoded.getJSONObject(0).has(TraceDeltaEncoder.Keys.BASE))
+        for (i in 1 until encoded.length()) {
+            assertEquals(i - 1, encoded.getJSONObject(i).getInt(TraceDeltaEncoder.Keys.BASE))
+        }
+        assertEquals(listOf("move 0/0"), operationsOf(encoded.getJSONObject(2)))
+        assertEquals(listOf("remove 1/6", "remove 1/5"), operationsOf(encoded.getJSONObject(3)))
+    }
+
+    @Test
+    fun encodesAKeyframeForANewActivity() {
+        val checkout = snapshot(1L, items(6))
+        val payment = snapshot(2L, items(6), name = "PaymentActivity")
+
+        val encoded = encodeAndVerify(checkout, payment)
+
+        assertSameJson(payment.toJson(), encoded.getJSONObject(1))
+    }
+
+    @Test
+    fun encodesAKeyframeWhenTheDeltaIsLargerThanHalfTheTree() {
+        val base = snapshot(1L, items(6))
+        // Every item changed its class: 6 replacements (and a move) in a tree of 10 views
+        val next = snapshot(2L, items(6, className = "AppCompatCheckBox"), titleX = 72f)
+
+        val encoded = encodeAndVerify(base, next)
+
+        assertSameJson(next.toJson(), encoded.getJSONObject(1))
+    }
+
+    @Test
+    fun encodesAReplacedRoot() {
+        val base = snapshot(1L, items(2))
+        val next = snapshot(2L, items(2), rootClassName = "FrameLayout")
+
+        val encoded = encodeAndVerify(base, next)
+
+        assertEquals(listOf("replace "), operationsOf(encoded.getJSONObject(1)))
+    }
+
+    /**
+     * @return The encoded traces, after checking that decoding them gives back [traces].
+     */
+    private fun encodeAndVerify(vararg traces: ActivityDetails): JSONArray {
+        val encoded = TraceDeltaEncoder.encode(traces.toList())
+
+        val decoded = decode(encoded)
+
+        assertEquals(traces.size, decoded.size)
+        traces.zip(decoded).forEach { (snapshot, decodedSnapshot) ->
+            assertSameJson(snapshot.toJson(), decodedSnapshot)
+        }
+
+        return encoded
+    }
+
+    private fun decode(encoded: JSONArray): List<JSONObject> {
+        val decoded = arrayListOf<JSONObject>()
+        for (i in 0 until encoded.length()) {
+            val entry = encoded.getJSONObject(i)
+            if (!entry.has(TraceDeltaEncoder.Keys.BASE)) {
+                decoded.add(entry)
+                continue
+            }
+
+            val base = decoded[entry.getInt(TraceDeltaEncoder.Keys.BASE)]
+            // Applied to a copy, the base stays as it was
+            var views = JSONObject(base.getJSONObject(ActivityDetails.Keys.VIEWS).toString())
+            val operations = entry.getJSONArray(TraceDeltaEncoder.Keys.OPERATIONS)
+            for (j in 0 until operations.length()) {
+                views = apply(operations.getJSONObject(j), views)
+            }
+
+            val snapshot = JSONObject()
+                    .put(ActivityDetails.Keys.NAME, entry.getString(ActivityDetails.Keys.NAME))
+                    .put(ActivityDetails.Keys.PACKAGE, entry.getString(ActivityDetails.Keys.PACKAGE))
+                    .put(ActivityDetails.Keys.TIMESTAMP, entry.getLong(ActivityDetails.Keys.TIMESTAMP))
+                    .put(ActivityDetails.Keys.VIEWS, views)
+            if (entry.optBoolean(ActivityDetails.Keys.PARTIAL)) {
+                snapshot.put(ActivityDetails.Keys.PARTIAL, true)
+            }
+            decoded.add(snapshot)
+        }
+
+        return decoded
+    }
+
+    /**
+     * @return The root, which is another one if it was replaced.
+     */
+    private fun apply(operation: JSONObject, root: JSONObject): JSONObject {
+        val path = operation.getString(TraceDeltaEncoder.Keys.PATH)
+        val indices = if (path.isEmpty()) listOf() else path.split('/').map { it.toInt() }
+        val type = operation.getString(TraceDeltaEncoder.Keys.OPERATION)
+
+        if (type == "move") {
+            nodeAt(root, indices)
+                    .put(ViewDetails.Keys.POSITION, operation.getJSONObject(ViewDetails.Keys.POSITION))
+                    .put(ViewDetails.Keys.DIMENSIONS, operation.getJSONObject(ViewDetails.Keys.DIMENSIONS))
+            return root
+        }
+
+        if (indices.isEmpty()) {
+            assertEquals("only the root can be replaced", "replace", type)
+            return operation.getJSONObject(TraceDeltaEncoder.Keys.NODE)
+        }
+
+        val parent = nodeAt(root, indices.dropLast(1))
+        val children = childrenOf(parent)
+        val index = indices.last()
+        when (type) {
+            "add" -> children.add(index, operation.getJSONObject(TraceDeltaEncoder.Keys.NODE))
+            "remove" -> children.removeAt(index)
+            "replace" -> children[index] = operation.getJSONObject(TraceDeltaEncoder.Keys.NODE)
+            else -> fail("unknown operation: $type")
+        }
+
+        // Leaves have no children array
+        if (children.isEmpty()) {
+            parent.remove(ViewDetails.Keys.CHILDREN)
+        } else {
+            parent.put(ViewDetails.Keys.CHILDREN, JSONArray(children))
+        }
+
+        return root
+    }
+
+    private fun nodeAt(root: JSONObject, indices: List<Int>): JSONObject {
+        return indices.fold(root) { node, index -> childrenOf(node)[index] }
+    }
+
+    private fun childrenOf(node: JSONObject): MutableList<JSONObject> {
+        val children = node.optJSONArray(ViewDetails.Keys.CHILDREN) ?: return arrayListOf()
+        return (0 until children.length()).mapTo(arrayListOf()) { children.getJSONObject(it) }
+    }
+
+    /**
+     * As "<op> <path>".
+     */
+    private fun operationsOf(delta: JSONObject): List<String> {
+        assertTrue("not a delta: $delta", delta.has(TraceDeltaEncoder.Keys.BASE))
+        val operations = delta.getJSONArray(TraceDeltaEncoder.Keys.OPERATIONS)
+        return (0 until operations.length()).map {
+            val operation = operations.getJSONObject(it)
+            "${operation.getString(TraceDeltaEncoder.Keys.OPERATION)} ${operation.getString(TraceDeltaEncoder.Keys.PATH)}"
+        }
+    }
+
+    /**
+     * Regardless of the order of the keys.
+     */
+    private fun assertSameJson(expected: JSONObject, actual: JSONObject) {
+        assertEquals(JsonParser().parse(expected.toString()), JsonParser().parse(actual.toString()))
+    }
+
+    private fun items(count: Int, className: String = "AppCompatTextView"): ArrayList<ViewDetails> {
+        return (0 until count).mapTo(arrayListOf()) {
+            ViewDetails(className, Position(0f, it * 100f), Size(1080, 100), arrayListOf(), 2)
+        }
+    }
+
+    /**
+     * A toolbar with a title (index 0) above a list of [items] (index 1).
+     */
+    private fun snapshot(timestamp: Long, items: ArrayList<ViewDetails>, titleX: Float = 16f, name: String = "CheckoutActivity",
+                         rootClassName: String = "DecorView", isPartial: Boolean = false): ActivityDetails {
+        val title = ViewDetails("AppCompatTextView", Position(titleX, 24f), Size(400, 48), arrayListOf(), 2)
+        val toolbar = ViewDetails("Toolbar", Position(0f, 0f), Size(1080, 96), arrayListOf(title), 1)
+        val list = ViewDetails("LinearLayout", Position(0f, 96f), Size(1080, 1824), items, 1)
+        val root = ViewDetails(rootClassName, Position(0f, 0f), Size(1080, 1920), arrayListOf(toolbar, list), 0)
+
+        return ActivityDetails(name, "com.example.shop", timestamp, root, isPartial)
+    }
+}
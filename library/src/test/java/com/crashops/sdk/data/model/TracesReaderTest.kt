@@ -0,0 +1,131 @@
+package com.crashops.sdk.data.model
+
+import org.json.JSONArray
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.File
+import java.io.StringReader
+
+/**
+ * The files are written the way the tracer stores them ([ActivityDetails.toJson]), reading them must give back the same snapshots.
+ */
+class TracesReaderTest {
+    @Test
+    fun readsASingleSnapshotFile() {
+        val snapshot = snapshot(1_700_000_000_000L, isPartial = true)
+
+        val read = read(snapshot.toJson().toString())
+
+        assertSameSnapshots(listOf(snapshot), read)
+    }
+
+    @Test
+    fun readsAFlushedArrayFile() {
+        val snapshots = listOf(snapshot(1_700_000_000_000L), snapshot(1_700_000_001_000L), snapshot(1_700_000_002_000L, hasViews = false))
+
+        val read = read(JSONArray(snapshots.map { it.toJson() }).toString())
+
+        assertSameSnapshots(snapshots, read)
+    }
+
+    @Test
+    fun readsStoredFiles() {
+        val snapshots = listOf(snapshot(1_700_000_000_000L), snapshot(1_700_000_001_000L))
+        val file = File.createTempFile("traces", ".json")
+        try {
+            file.writeText(JSONArray(snapshots.map { it.toJson() }).toString())
+
+            assertSameSnapshots(snapshots, TracesReader.read(file) { throw it })
+        } finally {
+            file.delete()
+        }
+    }
+
+    @Test
+    fun dropsInvalidSnapshotsAndViews() {
+        val json = """[
+            {"name":"NoTimestampActivity","views":{"className":"DecorView"}},
+            {"name":"MainActivity","package":"com.example.shop","timestamp":1700000000000,"unknown":{"a":[1,2]},"partial":null,
+             "views":{"className":"DecorView","depth":0,"position":{"x":0,"y":0},"dimensions":{"width":1080,"height":1920},
+                "children":[{"depth":1},{"className":"TextView","depth":1,"position":{"x":16,"y":24},"dimensions":{"width":200,"height":48}}]}},
+            "not a snapshot"
+        ]"""
+
+        val read = read(json)
+
+        val snapshot = read.single()
+        assertEquals(1_700_000_000_000L, snapshot.timestamp)
+        assertEquals(false, snapshot.isPartial)
+        val views = snapshot.viewDetails!!
+        assertEquals("TextView", views.children.single().className)
+        assertEquals(Position(16f, 24f), views.children.single().position)
+        assertSame(ClassNames.instance.intern("TextView"), views.children.single().className)
+    }
+
+    @Test
+    fun keepsTheSnapshotsBeforeAMalformedTail() {
+        val snapshots = listOf(snapshot(1_700_000_000_000L), snapshot(1_700_000_001_000L))
+        val complete = JSONArray(snapshots.map { it.toJson() }).toString()
+        // A third snapshot was being written when the process died
+        val truncated = complete.dropLast(1) + """,{"name":"MainActivity","timestamp":1700000002000,"views":{"classNa"""
+        val errors = arrayListOf<Exception>()
+
+        val read = TracesReader.read(StringReader(truncated)) { errors.add(it) }
+
+        assertSameSnapshots(snapshots, read)
+        assertEquals(1, errors.size)
+    }
+
+    @Test
+    fun readsNothingFromAnEmptyFile() {
+        val errors = arrayListOf<Exception>()
+
+        assertTrue(TracesReader.read(StringReader("")) { errors.add(it) }.isEmpty())
+        assertEquals(1, errors.size)
+    }
+
+    private fun read(json: String): List<ActivityDetails> {
+        return TracesReader.read(StringReader(json)) { throw it }
+    }
+
+    private fun assertSameSnapshots(expected: List<ActivityDetails>, actual: List<ActivityDetails>) {
+        assertEquals(expected.size, actual.size)
+        expected.zip(actual).forEach { (expectedSnapshot, actualSnapshot) ->
+            assertEquals(expectedSnapshot.name, actualSnapshot.name)
+            assertEquals(expectedSnapshot.packageName, actualSnapshot.packageName)
+            assertEquals(expectedSnapshot.timestamp, actualSnapshot.timestamp)
+            assertEquals(expectedSnapshot.isPartial, actualSnapshot.isPartial)
+            val expectedViews = expectedSnapshot.viewDetails
+            if (expectedViews == null) {
+                assertNull(actualSnapshot.viewDetails)
+            } else {
+                assertEquals(expectedViews, actualSnapshot.viewDetails)
+                assertEquals(expectedViews.depthsOf(), actualSnapshot.viewDetails!!.depthsOf())
+            }
+        }
+    }
+
+    /**
+     * [ViewDetails.equals] doesn't compare the depths.
+     */
+    private fun ViewDetails.depthsOf(): List<Int> {
+        return listOf(depth) + children.flatMap { it.depthsOf() }
+    }
+
+    private fun snapshot(timestamp: Long, isPartial: Boolean = false, hasViews: Boolean = true): ActivityDetails {
+        val views = if (hasViews) {
+            val labels = arrayListOf(
+                    ViewDetails("AppCompatTextView", Position(16f, 24f), Size(200, 48), arrayListOf(), 2),
+                    ViewDetails("AppCompatButton", Position(16f, 96f), Size(320, 96), arrayListOf(), 2))
+            val content = ViewDetails("LinearLayout", Position(0f, 210f), Size(1080, 1600), labels, 1)
+            ViewDetails("DecorView", Position(0f, 0f), Size(1080, 1920), arrayListOf(content), 0)
+        } else {
+            null
+        }
+
+        return ActivityDetails("CheckoutActivity", "com.example.shop", timestamp, views, isPartial)
+    }
+}
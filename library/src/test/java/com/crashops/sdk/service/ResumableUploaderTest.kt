@@ -0,0 +1,193 @@
+package com.crashops.sdk.service
+
+import com.crashops.sdk.communication.CborReportCodec
+import com.crashops.sdk.communication.Communicator
+import com.crashops.sdk.communication.JsonReportCodec
+import com.crashops.sdk.communication.LoopbackTransport
+import com.crashops.sdk.communication.ReportPayload
+import com.crashops.sdk.communication.ServerCapabilities
+import com.crashops.sdk.communication.TestEnvironment
+import com.crashops.sdk.util.SdkLogger
+import okio.Buffer
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.util.*
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class ResumableUploaderTest {
+    companion object {
+        private const val TIMEOUT_SECONDS = 10L
+        private const val MAX_PASSES = 100
+    }
+
+    private lateinit var server: LoopbackTransport
+    private lateinit var folder: File
+    private lateinit var stagedUploadsFolder: File
+    private lateinit var logFile: File
+    private lateinit var report: ByteArray
+
+    @Before
+    fun setUp() {
+        SdkLogger.isMuted = true
+        server = LoopbackTransport()
+        folder = createTempDir("uploads-test")
+        stagedUploadsFolder = File(folder, "uploads").apply { mkdirs() }
+        logFile = File(folder, "1700000000000.log")
+        report = sampleReport(ResumableUploader.THRESHOLD_BYTES + 3 * ResumableUploader.PART_BYTES + 123)
+        logFile.writeBytes(report)
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+        folder.deleteRecursively()
+    }
+
+    @Test
+    fun uploadsLargeReportsInParts() {
+        val uploader = uploader()
+        assertTrue(uploader.isResumable(logFile, ReportPayload.from(logFile)!!))
+
+        val (result, bytesSent) = pass(uploader)
+
+        assertEquals(202, result?.first)
+        assertEquals(report.size.toLong(), bytesSent)
+        assertArrayEquals(report, server.completedUploads.single().bytes.toByteArray())
+        val partsCount = (report.size + ResumableUploader.PART_BYTES - 1) / ResumableUploader.PART_BYTES
+        assertEquals(partsCount, server.receivedRequests.count { it.headers["Content-Range"] != null }.toLong())
+        assertTrue("the staged files should be discarded", stagedUploadsFolder.listFiles()!!.isEmpty())
+    }
+
+    @Test
+    fun resumesAfterDroppedConnections() {
+        server.uploadsDropProbability = 0.5
+        server.random = Random(42)
+        val uploader = uploader()
+
+        var passesCount = 0
+        var totalBytesSent = 0L
+        var result: Pair<Int, String?>? = null
+        while (result?.first != 202 && passesCount < MAX_PASSES) {
+            val (passResult, bytesSent) = pass(uploader)
+            result = passResult
+            totalBytesSent += bytesSent
+            passesCount++
+        }
+
+        assertEquals(202, result?.first)
+        assertTrue("expected dropped connections", server.droppedRequestsCount > 0)
+        assertTrue("expected more than one pass", passesCount > 1)
+        assertArrayEquals(report, server.completedUploads.single().bytes.toByteArray())
+        // Parts whose response was lost aren't counted as sent
+        assertTrue(totalBytesSent <= server.receivedUploadOffset())
+        assertTrue(stagedUploadsFolder.listFiles()!!.isEmpty())
+    }
+
+    @Test
+    fun continuesFromTheServersOffsetOnMismatch() {
+        server.dropAfterUploadParts = 2
+        val uploader = uploader()
+        assertNull(pass(uploader).first)
+        assertEquals(2 * ResumableUploader.PART_BYTES, server.receivedUploadOffset())
+
+        // The status says 0 while 2 parts are committed, the server answers the first part with a 409 and its offset
+        server.isUploadStatusStale = true
+        val (result, bytesSent) = pass(uploader)
+
+        assertEquals(202, result?.first)
+        assertArrayEquals(report, server.completedUploads.single().bytes.toByteArray())
+        assertEquals(2, server.receivedRequests.count { it.headers["Content-Range"]?.startsWith("bytes 0-") == true })
+        assertEquals(report.size - 2 * ResumableUploader.PART_BYTES + ResumableUploader.PART_BYTES, bytesSent)
+    }
+
+    @Test
+    fun restartsFromTheStagedState() {
+        server.dropAfterUploadParts = 1
+        val encoded = cborOf(report)
+        assertNull(pass(uploader(CborReportCodec.name)).first)
+
+        // A new process: the report's file and the negotiated codec no longer matter, the staged bytes are sent
+        logFile.writeText("{}")
+        val (result, bytesSent) = pass(uploader(JsonReportCodec.name))
+
+        assertEquals(202, result?.first)
+        val upload = server.completedUploads.single()
+        assertArrayEquals(encoded, upload.bytes.toByteArray())
+        assertEquals(CborReportCodec.contentType.toString(), upload.contentType)
+        assertEquals(encoded.size - ResumableUploader.PART_BYTES, bytesSent)
+        assertEquals(1, server.receivedRequests.count { it.method == "POST" && it.path == LoopbackTransport.UploadsPath })
+    }
+
+    @Test
+    fun startsOverWhenTheServerForgotTheUpload() {
+        server.dropAfterUploadParts = 2
+        val uploader = uploader()
+        assertNull(pass(uploader).first)
+
+        server.forgetUploads()
+        assertNull(pass(uploader).first)
+        val (result, _) = pass(uploader)
+
+        assertEquals(202, result?.first)
+        assertArrayEquals(report, server.completedUploads.single().bytes.toByteArray())
+        assertEquals(2, server.receivedRequests.count { it.method == "POST" && it.path == LoopbackTransport.UploadsPath })
+    }
+
+    @Test
+    fun isNotUsedUntilTheServerAdvertisedIt() {
+        val environment = TestEnvironment(server)
+        val uploader = ResumableUploader(Communicator(environment)) { stagedUploadsFolder }
+
+        assertFalse(uploader.isResumable(logFile, ReportPayload.from(logFile)!!))
+    }
+
+    private fun uploader(codecName: String = JsonReportCodec.name): ResumableUploader {
+        val environment = TestEnvironment(server)
+        environment.capabilities.add(ServerCapabilities.RESUMABLE_UPLOADS)
+        environment.reportCodec = if (codecName == CborReportCodec.name) CborReportCodec else JsonReportCodec
+        return ResumableUploader(Communicator(environment)) { stagedUploadsFolder }
+    }
+
+    private fun pass(uploader: ResumableUploader): Pair<Pair<Int, String?>?, Long> {
+        val latch = CountDownLatch(1)
+        var response: Pair<Int, String?>? = null
+        var bytesSent = -1L
+        uploader.upload(logFile, ReportPayload.from(logFile)!!, SessionHeaders.SCHEMA_V2, "key-1") { result, sent ->
+            response = result
+            bytesSent = sent
+            latch.countDown()
+        }
+
+        assertTrue("no callback", latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        return Pair(response, bytesSent)
+    }
+
+    private fun LoopbackTransport.receivedUploadOffset(): Long {
+        return receivedRequests.filter { it.headers["Content-Range"] != null }.fold(0L) { total, part -> total + part.body.size }
+    }
+
+    private fun cborOf(json: ByteArray): ByteArray {
+        val buffer = Buffer()
+        CborReportCodec.encode(json.inputStream(), buffer)
+        return buffer.readByteArray()
+    }
+
+    private fun sampleReport(minLength: Long): ByteArray {
+        val random = Random(3)
+        val frames = StringBuilder()
+        while (frames.length < minLength) {
+            if (frames.isNotEmpty()) frames.append(',')
+            frames.append("\"com.example.shop.Cart\$${random.nextInt(1000)}.onItem(Cart.kt:${random.nextInt(500)})\"")
+        }
+
+        return "{\"isFatal\":true,\"timestamp\":1700000000000,\"stackTrace\":[$frames]}".toByteArray(Charsets.UTF_8)
+    }
+}
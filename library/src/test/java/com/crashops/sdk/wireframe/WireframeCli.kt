@@ -0,0 +1,46 @@
+package com.crashops.sdk.wireframe
+
+import com.crashops.sdk.data.model.TracesReader
+import java.io.File
+
+/**
+ * Renders exported traces files (the contents of a session's `traces` folder) on a desktop.
+ * It's kept with the unit tests, out of the AAR, and runs on their classpath:
+ *
+ * `java -cp <unit test classes, sdk classes, kotlin-stdlib, gson> com.crashops.sdk.wireframe.WireframeCli <output folder> <traces files or folders...>`
+ *
+ * Every snapshot is written as `<activity name>_<timestamp>.png`.
+ */
+object WireframeCli {
+    @JvmStatic
+    fun main(args: Array<String>) {
+        if (args.size < 2) {
+            System.err.println("usage: WireframeCli <output folder> <traces files or folders...>")
+            System.exit(1)
+        }
+
+        val outputFolder = File(args[0])
+        if (!outputFolder.isDirectory && !outputFolder.mkdirs()) {
+            System.err.println("can't create $outputFolder")
+            System.exit(1)
+        }
+
+        val renderer = WireframeRenderer()
+        var renderedCount = 0
+        val startTime = System.nanoTime()
+        args.drop(1)
+                .flatMap { path -> File(path).walkTopDown().filter { it.isFile }.toList() }
+                .forEach { tracesFile ->
+                    val snapshots = TracesReader.read(tracesFile) { e -> System.err.println("$tracesFile: $e") }
+                    for (activityDetails in snapshots) {
+                        val png = renderer.render(activityDetails) ?: continue
+                        val name = activityDetails.name.replace(Regex("[^A-Za-z0-9._-]"), "_")
+                        File(outputFolder, "${name}_${activityDetails.timestamp}.png").writeBytes(png)
+                        renderedCount++
+                    }
+                }
+
+        val elapsedMilliseconds = (System.nanoTime() - startTime) / 1_000_000
+        println("rendered $renderedCount wireframes in $elapsedMilliseconds ms")
+    }
+}
@@ -0,0 +1,61 @@
+package com.crashops.sdk.wireframe
+
+import com.crashops.sdk.data.model.ActivityDetails
+import com.crashops.sdk.data.model.Position
+import com.crashops.sdk.data.model.Size
+import com.crashops.sdk.data.model.ViewDetails
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.awt.image.BufferedImage
+import java.util.*
+import javax.imageio.ImageIO
+
+class WireframeRendererTest {
+    @Test
+    fun encodesPixelsThatDecodeBack() {
+        val width = 37
+        val height = 21
+        val pixels = ByteArray(width * height)
+        Random(5).nextBytes(pixels)
+
+        val image = decode(PngEncoder.encode(pixels, width, height))
+
+        assertEquals(width, image.width)
+        assertEquals(height, image.height)
+        for (y in 0 until height) {
+            for (x in 0 until width) {
+                assertEquals("($x, $y)", pixels[y * width + x].toInt() and 0xFF, image.raster.getSample(x, y, 0))
+            }
+        }
+    }
+
+    @Test
+    fun rendersTheViewsAsBoxes() {
+        val button = ViewDetails("Button", Position(100f, 200f), Size(300, 100), arrayListOf(), 1)
+        val root = ViewDetails("DecorView", Position(0f, 0f), Size(720, 1280), arrayListOf(button), 0)
+
+        val image = decode(WireframeRenderer().render(root))
+
+        // Scaled down by half to fit the default 360 pixels
+        assertEquals(360, image.width)
+        assertEquals(640, image.height)
+        val rootShade = image.raster.getSample(300, 600, 0)
+        val buttonShade = image.raster.getSample(148, 148, 0)
+        assertTrue("the deeper box should be darker", buttonShade < rootShade)
+        assertEquals("the borders are drawn", 0x40, image.raster.getSample(0, 0, 0))
+    }
+
+    @Test
+    fun skipsSnapshotsWithoutViews() {
+        assertNull(WireframeRenderer().render(ActivityDetails("MainActivity", "com.example.shop", 1L, null, false)))
+    }
+
+    private fun decode(png: ByteArray): BufferedImage {
+        val image = ImageIO.read(png.inputStream())
+        assertNotNull("not a PNG that ImageIO can read", image)
+        return image
+    }
+}